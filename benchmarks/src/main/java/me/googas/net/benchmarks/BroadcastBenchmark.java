@@ -0,0 +1,107 @@
+package me.googas.net.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import me.googas.net.api.messages.Broadcast;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.RequestBuilder;
+import me.googas.net.sockets.json.client.JsonClient;
+import me.googas.net.sockets.json.server.JsonClientThread;
+import me.googas.net.sockets.json.server.JsonSocketServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Broadcasts of a request from a {@link JsonSocketServer} to every connected {@link JsonClient},
+ * which echo the payload back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+  /** The clients connected to the server. */
+  @Param({"1", "8", "32"})
+  public int clients;
+
+  /** The size of the payload echoed in characters. */
+  @Param({"16", "4096"})
+  public int payload;
+
+  private JsonSocketServer server;
+  private final List<JsonClient> connected = new ArrayList<>();
+  private RequestBuilder<String> builder;
+
+  /**
+   * Starts the server and connects the clients.
+   *
+   * @throws IOException if the server could not be started or a client could not connect
+   * @throws InterruptedException if interrupted while waiting for the clients to be accepted
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException, InterruptedException {
+    int port = Fixtures.freePort();
+    this.server = JsonSocketServer.listen(port).start();
+    for (int i = 0; i < this.clients; i++) {
+      this.connected.add(
+          JsonClient.join("localhost", port).addReceptors(new Fixtures.Receptors()).start());
+    }
+    while (this.server.getClients().size() < this.clients) {
+      Thread.sleep(10);
+    }
+    this.builder =
+        Request.builder(String.class, "echo").put("payload", Fixtures.payload(this.payload));
+  }
+
+  /**
+   * Closes the clients and the server.
+   *
+   * @throws IOException if the server could not be closed
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.connected.forEach(JsonClient::close);
+    this.connected.clear();
+    this.server.close();
+  }
+
+  /**
+   * Broadcasts using {@link
+   * JsonSocketServer#sendRequest(me.googas.net.api.messages.StarboxRequest)} which blocks until
+   * every client responds.
+   *
+   * @return the responses of the clients
+   */
+  @Benchmark
+  public Map<JsonClientThread, Optional<String>> sync() {
+    return this.builder.send(this.server);
+  }
+
+  /**
+   * Broadcasts using the scatter/gather future and waits for it.
+   *
+   * @return the responses of the clients
+   */
+  @Benchmark
+  public Broadcast<JsonClientThread, String> async() {
+    return this.builder.sendAsync(this.server, 1000).join();
+  }
+}
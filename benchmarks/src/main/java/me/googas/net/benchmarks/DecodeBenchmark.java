@@ -0,0 +1,98 @@
+package me.googas.net.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.Response;
+import me.googas.net.sockets.json.adapters.MessageDeserializer;
+import me.googas.net.sockets.json.adapters.MessageReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of received messages with the single pass {@link MessageReader} compared to the tree
+ * based {@link MessageDeserializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+  /** The size of the payload of the messages in characters. */
+  @Param({"64", "4096", "262144"})
+  public int payload;
+
+  @NonNull
+  private final Gson gson =
+      new GsonBuilder().registerTypeAdapter(Message.class, new MessageDeserializer()).create();
+
+  private String request;
+  private String response;
+
+  /** Serializes the messages to decode. */
+  @Setup
+  public void setup() {
+    String payload = Fixtures.payload(this.payload);
+    this.request =
+        this.gson.toJson(Request.builder(String.class, "echo").put("payload", payload).build());
+    Response<String> response = new Response<>(UUID.randomUUID(), payload);
+    response.setError(false);
+    this.response = this.gson.toJson(response);
+  }
+
+  /**
+   * Decodes a request.
+   *
+   * @return the request
+   */
+  @Benchmark
+  public Message request() {
+    return MessageReader.read(this.gson, this.request, id -> null);
+  }
+
+  /**
+   * Decodes a response binding its object to the type of the awaited request.
+   *
+   * @return the response
+   */
+  @Benchmark
+  public Message response() {
+    return MessageReader.read(this.gson, this.response, id -> String.class);
+  }
+
+  /**
+   * Decodes a request into a tree before binding it.
+   *
+   * @return the request
+   */
+  @Benchmark
+  public Message requestTree() {
+    return this.gson.fromJson(this.request, Message.class);
+  }
+
+  /**
+   * Decodes a response into a tree before binding it.
+   *
+   * @return the response
+   */
+  @Benchmark
+  public Message responseTree() {
+    return this.gson.fromJson(this.response, Message.class);
+  }
+}
@@ -0,0 +1,142 @@
+package me.googas.net.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.sockets.json.JsonReceptor;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
+import me.googas.net.sockets.json.ReceptorSet;
+import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
+import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
+import me.googas.net.sockets.json.reflect.ReflectJsonReceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch of a received request to its receptor in a {@link ReceptorSet} holding many receptors:
+ * looking the receptor up and executing it through reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+  /** The receptors registered in the set. */
+  @Param({"1", "64", "1024"})
+  public int receptors;
+
+  @NonNull private final Gson gson = new Gson();
+  @NonNull private final Messenger messenger = new IdleMessenger();
+  private ReceptorSet set;
+  private ReceivedJsonRequest request;
+
+  /** Registers the receptors and prepares the request. */
+  @Setup
+  public void setup() {
+    List<JsonReceptor> receptors = new ArrayList<>();
+    for (int i = 1; i < this.receptors; i++) {
+      receptors.add(new NamedReceptor("method-" + i));
+    }
+    receptors.addAll(ReflectJsonReceptor.getReceptors(new Fixtures.Receptors()));
+    this.set = new ReceptorSet(receptors);
+    Map<String, JsonElement> parameters = new HashMap<>();
+    parameters.put("payload", new JsonPrimitive(Fixtures.payload(16)));
+    this.request = new ReceivedJsonRequest(UUID.randomUUID(), "echo", parameters);
+  }
+
+  /**
+   * Looks up the receptor of the request.
+   *
+   * @return the receptor
+   */
+  @Benchmark
+  public Optional<JsonReceptor> lookup() {
+    return this.set.get(this.request.getMethod());
+  }
+
+  /**
+   * Looks up the receptor of the request and executes it.
+   *
+   * @return the object returned by the receptor
+   * @throws JsonExternalCommunicationException if the receptor fails
+   * @throws JsonInternalCommunicationException if the receptor fails
+   */
+  @Benchmark
+  public Object dispatch()
+      throws JsonExternalCommunicationException, JsonInternalCommunicationException {
+    JsonReceptor receptor = this.set.get(this.request.getMethod()).orElse(null);
+    return receptor == null ? null : receptor.execute(this.messenger, this.request, this.gson);
+  }
+
+  /** A receptor that is only registered to fill the set. */
+  private static class NamedReceptor implements JsonReceptor {
+
+    @NonNull private final String method;
+
+    private NamedReceptor(@NonNull String method) {
+      this.method = method;
+    }
+
+    @Override
+    public Object execute(
+        Messenger messenger, @NonNull ReceivedJsonRequest request, @NonNull Gson gson) {
+      return null;
+    }
+
+    @Override
+    public @NonNull String getRequestMethod() {
+      return this.method;
+    }
+  }
+
+  /** A messenger given to the receptors which never sends anything. */
+  private static class IdleMessenger implements Messenger {
+
+    @Override
+    public void listen() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public <T> void sendRequest(
+        @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+      consumer.accept(Optional.empty());
+    }
+
+    @Override
+    public <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+        @NonNull StarboxRequest<T> request) {
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    @Override
+    public <T> @NonNull Optional<T> sendRequest(@NonNull StarboxRequest<T> request) {
+      return Optional.empty();
+    }
+  }
+}
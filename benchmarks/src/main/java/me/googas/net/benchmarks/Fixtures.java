@@ -0,0 +1,53 @@
+package me.googas.net.benchmarks;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import lombok.NonNull;
+import me.googas.net.sockets.json.ParamName;
+import me.googas.net.sockets.json.Receptor;
+
+/** Shared pieces of the benchmarks. */
+public class Fixtures {
+
+  /**
+   * Get a port which is free in this machine, so benchmarks running in the same box do not clash.
+   *
+   * @return the port
+   * @throws IOException if no port could be opened
+   */
+  public static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      socket.setReuseAddress(true);
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * Get a payload of ascii characters.
+   *
+   * @param size the amount of characters of the payload
+   * @return the payload
+   */
+  @NonNull
+  public static String payload(int size) {
+    char[] chars = new char[size];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+
+  /** The receptors used by the benchmarks. */
+  public static class Receptors {
+
+    /**
+     * Respond with the same payload that was received.
+     *
+     * @param payload the payload received
+     * @return the same payload
+     */
+    @Receptor("echo")
+    public String echo(@ParamName("payload") String payload) {
+      return payload;
+    }
+  }
+}
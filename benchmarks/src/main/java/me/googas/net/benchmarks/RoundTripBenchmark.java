@@ -0,0 +1,125 @@
+package me.googas.net.benchmarks;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import me.googas.net.api.RequestExecutors;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.RequestBuilder;
+import me.googas.net.sockets.json.client.JsonClient;
+import me.googas.net.sockets.json.client.JsonClientPool;
+import me.googas.net.sockets.json.io.Framing;
+import me.googas.net.sockets.json.server.JsonSocketServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips of a request from a {@link JsonClient} to a {@link JsonSocketServer} over loopback.
+ * The request carries a payload that the server echoes back.
+ *
+ * <p>The threads sending requests are set with the {@code -t} option of JMH, the threads running
+ * the receptors in the server with the {@code workers} parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+  /** The framing negotiated by the clients. */
+  @Param({"LINE", "LENGTH"})
+  public Framing framing;
+
+  /** The size of the payload echoed in characters. */
+  @Param({"16", "4096"})
+  public int payload;
+
+  /** The connections of the client pool. */
+  @Param({"1", "4"})
+  public int connections;
+
+  /** The threads running the receptors in the server. */
+  @Param({"4"})
+  public int workers;
+
+  /** The requests sent at once by the async benchmark before waiting for them. */
+  @Param({"16"})
+  public int pipeline;
+
+  private ExecutorService executor;
+  private JsonSocketServer server;
+  private JsonClientPool pool;
+  private RequestBuilder<String> builder;
+
+  /**
+   * Starts the server and connects the pool.
+   *
+   * @throws IOException if the server could not be started or the pool could not connect
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    int port = Fixtures.freePort();
+    this.executor = RequestExecutors.bounded(this.workers, 1 << 16);
+    this.server =
+        JsonSocketServer.listen(port)
+            .executor(this.executor)
+            .addReceptors(new Fixtures.Receptors())
+            .start();
+    this.pool = JsonClient.join("localhost", port).framing(this.framing).pool(this.connections);
+    this.builder =
+        Request.builder(String.class, "echo").put("payload", Fixtures.payload(this.payload));
+  }
+
+  /**
+   * Closes the pool and the server.
+   *
+   * @throws IOException if the server could not be closed
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.pool.close();
+    this.server.close();
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Sends a request and blocks until its response.
+   *
+   * @return the echoed payload
+   * @throws MessengerListenFailException if the request fails
+   */
+  @Benchmark
+  public Optional<String> sync() throws MessengerListenFailException {
+    return this.builder.send(this.pool);
+  }
+
+  /**
+   * Sends {@link #pipeline} requests at once and waits for every response.
+   *
+   * @return null once every request is responded
+   */
+  @Benchmark
+  public Void async() {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[this.pipeline];
+    for (int i = 0; i < futures.length; i++) {
+      futures[i] = this.builder.sendAsync(this.pool);
+    }
+    return CompletableFuture.allOf(futures).join();
+  }
+}
@@ -1,6 +1,7 @@
 package me.googas.net.api;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import lombok.NonNull;
 import me.googas.net.api.exception.MessengerListenFailException;
@@ -28,6 +29,17 @@ public interface Messenger {
    */
   <T> void sendRequest(@NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer);
 
+  /**
+   * Sends a request to this messenger asynchronously.
+   *
+   * @param request the request that was send and must be processed by this messenger
+   * @param <T> the type of object that the request expects
+   * @return a future which will be completed with the requested object wrapped in a {@link
+   *     Optional} instance or completed exceptionally if the request fails or times out
+   */
+  @NonNull
+  <T> CompletableFuture<Optional<T>> sendRequestAsync(@NonNull StarboxRequest<T> request);
+
   /**
    * Sends a request to get the requested object.
    *
@@ -0,0 +1,96 @@
+package me.googas.net.api;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+
+/**
+ * Ready-made {@link Executor} to run the receptors of the requests that a {@link Messenger}
+ * receives. By default messengers use the common {@link java.util.concurrent.ForkJoinPool} which is
+ * shared with the rest of the JVM, receptors which block should use one of these instead.
+ *
+ * <p>Executors may reject requests by throwing a {@link RejectedExecutionException}, in that case
+ * the messenger responds with an {@link Error} right away.
+ */
+public class RequestExecutors {
+
+  /**
+   * Get an executor that runs each request in a new virtual thread. Virtual threads are only
+   * available since Java 21.
+   *
+   * @return the executor if the JVM supports virtual threads, empty otherwise
+   */
+  @NonNull
+  public static Optional<ExecutorService> virtual() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return Optional.of((ExecutorService) method.invoke(null));
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Get an executor with a fixed amount of threads and a bounded queue. Once the threads are busy
+   * and the queue is full requests are rejected with a {@link RejectedExecutionException}. Idle
+   * threads are stopped after a minute.
+   *
+   * @param threads the amount of threads to run requests
+   * @param queue the maximum amount of requests waiting for a thread
+   * @return the executor
+   */
+  @NonNull
+  public static ExecutorService bounded(int threads, int queue) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            1,
+            TimeUnit.MINUTES,
+            new ArrayBlockingQueue<>(queue),
+            new RequestThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Get an executor using virtual threads if the JVM supports them, else a {@link #bounded(int,
+   * int)} executor.
+   *
+   * @param threads the amount of threads of the bounded executor
+   * @param queue the maximum amount of requests waiting in the bounded executor
+   * @return the executor
+   */
+  @NonNull
+  public static ExecutorService preferVirtual(int threads, int queue) {
+    return RequestExecutors.virtual().orElseGet(() -> RequestExecutors.bounded(threads, queue));
+  }
+
+  /** Creates daemon threads to run requests. */
+  private static class RequestThreadFactory implements ThreadFactory {
+
+    @NonNull private static final AtomicInteger pools = new AtomicInteger();
+    @NonNull private final AtomicInteger threads = new AtomicInteger();
+    private final int pool = RequestThreadFactory.pools.incrementAndGet();
+
+    @Override
+    public Thread newThread(@NonNull Runnable runnable) {
+      Thread thread =
+          new Thread(
+              runnable, "starbox-requests-" + this.pool + "-" + this.threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
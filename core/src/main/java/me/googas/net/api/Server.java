@@ -1,13 +1,23 @@
 package me.googas.net.api;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import lombok.NonNull;
 import me.googas.net.api.auth.Authenticator;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Broadcast;
 import me.googas.net.api.messages.StarboxRequest;
+import me.googas.starbox.scheduler.TimingWheel;
 
 /** This object represents the server {@link Messenger} connects to. */
 public interface Server<M extends Messenger> {
@@ -46,6 +56,68 @@ public interface Server<M extends Messenger> {
   @NonNull
   <T> Map<M, Optional<T>> sendRequest(@NonNull StarboxRequest<T> request);
 
+  /**
+   * Send a request to every client at once and gather their responses. The future is completed once
+   * every client has responded or failed or when the deadline is reached, whichever happens first.
+   * Clients that did not respond before the deadline are included in the {@link
+   * Broadcast#getFailures()}.
+   *
+   * @param request the request to send
+   * @param timeout the deadline of the whole broadcast in millis
+   * @param <T> the type of object requested
+   * @return a future completed with the responses of the clients
+   */
+  @NonNull
+  default <T> CompletableFuture<Broadcast<M, T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request, long timeout) {
+    List<M> clients = new ArrayList<>(this.getClients());
+    Map<M, Optional<T>> responses = new ConcurrentHashMap<>();
+    Map<M, Throwable> failures = new ConcurrentHashMap<>();
+    CompletableFuture<Broadcast<M, T>> future = new CompletableFuture<>();
+    if (clients.isEmpty()) {
+      future.complete(new Broadcast<>(responses, failures));
+      return future;
+    }
+    AtomicInteger remaining = new AtomicInteger(clients.size());
+    TimingWheel.Timeout deadline =
+        TimingWheel.getShared()
+            .schedule(
+                timeout,
+                () -> {
+                  Map<M, Throwable> late = new HashMap<>(failures);
+                  for (M client : clients) {
+                    if (!responses.containsKey(client) && !late.containsKey(client)) {
+                      late.put(
+                          client,
+                          new MessengerListenFailException(
+                              "The request " + request + " has timed out after " + timeout + "ms"));
+                    }
+                  }
+                  future.complete(new Broadcast<>(responses, late));
+                });
+    for (M client : clients) {
+      client
+          .sendRequestAsync(request)
+          .whenComplete(
+              (optional, throwable) -> {
+                if (throwable != null) {
+                  failures.put(
+                      client,
+                      throwable instanceof CompletionException && throwable.getCause() != null
+                          ? throwable.getCause()
+                          : throwable);
+                } else {
+                  responses.put(client, optional);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                  deadline.cancel();
+                  future.complete(new Broadcast<>(responses, failures));
+                }
+              });
+    }
+    return future;
+  }
+
   /** Makes the server start listening. */
   void start();
 
@@ -1,10 +1,13 @@
 package me.googas.net.api.messages;
 
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import me.googas.net.api.Messenger;
+import me.googas.starbox.scheduler.TimingWheel;
 
 /**
  * A request that is waiting for a {@link me.googas.net.api.messages.Response} in a {@link
@@ -26,6 +29,12 @@ public class AwaitingRequest<T> {
   /** The consumer in case an exception happens. */
   @NonNull @Getter private final Consumer<Throwable> exceptionConsumer;
 
+  /** Whether the request has been completed by either a response or a timeout. */
+  @NonNull private final AtomicBoolean done = new AtomicBoolean();
+
+  /** The timeout scheduled for this request. */
+  @Setter private TimingWheel.Timeout timeout;
+
   /**
    * Create the awaiting request.
    *
@@ -57,6 +66,18 @@ public class AwaitingRequest<T> {
     this(request, clazz, consumer, Throwable::printStackTrace);
   }
 
+  /**
+   * Marks this request as done and cancels its timeout. Only the first call succeeds so a request
+   * cannot be given a response and timed out at the same time.
+   *
+   * @return true if the request was not done already
+   */
+  public boolean done() {
+    if (!this.done.compareAndSet(false, true)) return false;
+    if (this.timeout != null) this.timeout.cancel();
+    return true;
+  }
+
   @Override
   public String toString() {
     return this.request.toString();
@@ -0,0 +1,79 @@
+package me.googas.net.api.messages;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.NonNull;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.Server;
+
+/**
+ * The responses of a request sent to every messenger of a {@link Server}. This map contains the
+ * messengers that gave a response before the deadline of the broadcast, the messengers that failed
+ * to give one, because of an error or because they were too slow, can be found in {@link
+ * #getFailures()}.
+ *
+ * @param <M> the type of messenger that gave the responses
+ * @param <T> the type of object requested
+ */
+public class Broadcast<M extends Messenger, T> extends AbstractMap<M, Optional<T>> {
+
+  /** The responses of each messenger. */
+  @NonNull private final Map<M, Optional<T>> responses;
+
+  /** The reason of each messenger that did not give a response. */
+  @NonNull private final Map<M, Throwable> failures;
+
+  /**
+   * Create the broadcast. The maps are copied.
+   *
+   * @param responses the responses of each messenger
+   * @param failures the reason of each messenger that did not give a response
+   */
+  public Broadcast(@NonNull Map<M, Optional<T>> responses, @NonNull Map<M, Throwable> failures) {
+    this.responses = Collections.unmodifiableMap(new HashMap<>(responses));
+    this.failures = Collections.unmodifiableMap(new HashMap<>(failures));
+  }
+
+  /**
+   * Get the reason of each messenger that did not give a response.
+   *
+   * @return an unmodifiable map of the messengers and the reason of their failure
+   */
+  @NonNull
+  public Map<M, Throwable> getFailures() {
+    return this.failures;
+  }
+
+  /**
+   * Get whether every messenger gave a response.
+   *
+   * @return true if no messenger failed
+   */
+  public boolean isComplete() {
+    return this.failures.isEmpty();
+  }
+
+  @Override
+  public @NonNull Set<Entry<M, Optional<T>>> entrySet() {
+    return this.responses.entrySet();
+  }
+
+  @Override
+  public Optional<T> get(Object key) {
+    return this.responses.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return this.responses.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return this.responses.size();
+  }
+}
@@ -0,0 +1,51 @@
+package me.googas.net.api.messages;
+
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A message published to every messenger subscribed to a topic. Unlike a {@link Request} it does
+ * not wait for a {@link Response}.
+ *
+ * @param <T> the type of the object published
+ */
+public class Publication<T> implements Message {
+
+  /** The id of the message. */
+  @NonNull @Getter private final UUID id;
+
+  /** The topic in which the object is published. */
+  @NonNull @Getter private final String topic;
+
+  /** The object published. */
+  @Getter private final T object;
+
+  /**
+   * Create the publication.
+   *
+   * @param id the id of the message
+   * @param topic the topic in which the object is published
+   * @param object the object published
+   */
+  public Publication(@NonNull UUID id, @NonNull String topic, T object) {
+    this.id = id;
+    this.topic = topic;
+    this.object = object;
+  }
+
+  /**
+   * Create the publication.
+   *
+   * @param topic the topic in which the object is published
+   * @param object the object published
+   */
+  public Publication(@NonNull String topic, T object) {
+    this(UUID.randomUUID(), topic, object);
+  }
+
+  @Override
+  public String toString() {
+    return "Publication{" + "id=" + this.id + ", topic='" + this.topic + '\'' + '}';
+  }
+}
@@ -1,6 +1,7 @@
 package me.googas.net.api.messages;
 
 import java.util.Map;
+import java.util.Optional;
 import lombok.NonNull;
 
 /** An extension for messages to receive a {@link me.googas.net.api.messages.Response} */
@@ -34,4 +35,35 @@ public interface Request extends Message {
    */
   @NonNull
   Map<String, ?> getParameters();
+
+  /**
+   * Get the deadline of the request. This is the time in epoch millis after which the messenger
+   * that sent the request is no longer waiting for the response, so receptors may stop early.
+   *
+   * @return the deadline or empty if the request has no deadline
+   */
+  @NonNull
+  default Optional<Long> getDeadline() {
+    return Optional.empty();
+  }
+
+  /**
+   * Get whether the deadline of the request has passed.
+   *
+   * @return true if the request has a deadline and it has passed
+   */
+  default boolean isExpired() {
+    return this.getDeadline().filter(deadline -> System.currentTimeMillis() > deadline).isPresent();
+  }
+
+  /**
+   * Get whether the request may be sent again without changing its result, for instance a request
+   * that only reads. A messenger that loses its connection may send idempotent requests again once
+   * it reconnects. This is only known by the messenger that sends the request.
+   *
+   * @return true if the request is idempotent
+   */
+  default boolean isIdempotent() {
+    return false;
+  }
 }
@@ -3,6 +3,8 @@ package me.googas.net.api.messages;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import lombok.NonNull;
@@ -20,6 +22,8 @@ public class RequestBuilder<T> {
   @NonNull private final Class<T> clazz;
   @NonNull private final Map<String, Object> parameters;
   @NonNull private String method;
+  private Long deadline;
+  private boolean idempotent;
 
   /**
    * Create the request.
@@ -86,7 +90,13 @@ public class RequestBuilder<T> {
    */
   @NonNull
   public StarboxRequest<T> build() {
-    return new StarboxRequest<>(this.clazz, this.method, this.parameters);
+    return new StarboxRequest<>(
+        this.clazz,
+        UUID.randomUUID(),
+        this.method,
+        this.parameters,
+        this.deadline,
+        this.idempotent);
   }
 
   /**
@@ -101,6 +111,20 @@ public class RequestBuilder<T> {
     return messenger == null ? Optional.empty() : messenger.sendRequest(this.build());
   }
 
+  /**
+   * Send the request async.
+   *
+   * @param messenger the messenger to send the request
+   * @return a future which will be completed with an {@link Optional} instance holding the
+   *     requested object
+   */
+  @NonNull
+  public CompletableFuture<Optional<T>> sendAsync(Messenger messenger) {
+    return messenger == null
+        ? CompletableFuture.completedFuture(Optional.empty())
+        : messenger.sendRequestAsync(this.build());
+  }
+
   /**
    * Send the request async.
    *
@@ -136,6 +160,23 @@ public class RequestBuilder<T> {
     return server == null ? new HashMap<>() : server.sendRequest(this.build());
   }
 
+  /**
+   * Send the request to every messenger of a server at once.
+   *
+   * @see Server#sendRequestAsync(StarboxRequest, long)
+   * @param server the server to send the request
+   * @param timeout the deadline of the whole broadcast in millis
+   * @param <M> the type of messenger of the server
+   * @return a future completed with the responses of the messengers
+   */
+  @NonNull
+  public <M extends Messenger> CompletableFuture<Broadcast<M, T>> sendAsync(
+      Server<M> server, long timeout) {
+    return server == null
+        ? CompletableFuture.completedFuture(new Broadcast<>(new HashMap<>(), new HashMap<>()))
+        : server.sendRequestAsync(this.build(), timeout);
+  }
+
   /**
    * Send the request using a server async.
    *
@@ -171,4 +212,42 @@ public class RequestBuilder<T> {
     this.method = method;
     return this;
   }
+
+  /**
+   * Set the deadline of the request. Once it passes the receiver skips the request if it has not
+   * started to run it yet.
+   *
+   * @param deadline the deadline in epoch millis
+   * @return this same instance
+   */
+  @NonNull
+  public RequestBuilder<T> setDeadline(long deadline) {
+    this.deadline = deadline;
+    return this;
+  }
+
+  /**
+   * Set the deadline of the request to some millis from now.
+   *
+   * @see #setDeadline(long)
+   * @param millis the millis from now in which the request expires
+   * @return this same instance
+   */
+  @NonNull
+  public RequestBuilder<T> within(long millis) {
+    return this.setDeadline(System.currentTimeMillis() + millis);
+  }
+
+  /**
+   * Mark the request as idempotent: sending it again does not change its result, so it may be sent
+   * again if the connection is lost before its response arrives.
+   *
+   * @see Request#isIdempotent()
+   * @return this same instance
+   */
+  @NonNull
+  public RequestBuilder<T> idempotent() {
+    this.idempotent = true;
+    return this;
+  }
 }
@@ -15,12 +15,15 @@ public class Response<T> implements Message {
   /** The id of the message. */
   @NonNull @Getter private final UUID id;
 
+  /**
+   * Whether the response ended with an error. This is declared before the object so it is
+   * serialized first and readers know how to bind the object as soon as they reach it.
+   */
+  @Getter private boolean error = true;
+
   /** The object which this is responding with. */
   private T object;
 
-  /** Whether the response ended with an error. */
-  @Getter private boolean error = true;
-
   /**
    * Create the response.
    *
@@ -3,6 +3,7 @@ package me.googas.net.api.messages;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.StringJoiner;
 import java.util.UUID;
 import lombok.Getter;
@@ -27,6 +28,12 @@ public class StarboxRequest<T> implements Request {
   /** The parameters that the {@link JsonReceptor} requires to give a response. */
   @NonNull @Getter private final Map<String, ?> parameters;
 
+  /** The deadline of the request in epoch millis or null if it has no deadline. */
+  private final Long deadline;
+
+  /** Whether the request may be sent again without changing its result. */
+  private final transient boolean idempotent;
+
   /**
    * Create the request.
    *
@@ -34,16 +41,56 @@ public class StarboxRequest<T> implements Request {
    * @param id the id of the request
    * @param method the method to get the receptor
    * @param parameters the parameters to execute in the receptor
+   * @param deadline the deadline of the request in epoch millis or null if it has no deadline
+   * @param idempotent whether the request may be sent again without changing its result
    */
   public StarboxRequest(
       @NonNull Class<T> clazz,
       @NonNull UUID id,
       @NonNull String method,
-      @NonNull Map<String, ?> parameters) {
+      @NonNull Map<String, ?> parameters,
+      Long deadline,
+      boolean idempotent) {
     this.clazz = clazz;
     this.id = id;
     this.method = method;
     this.parameters = parameters;
+    this.deadline = deadline;
+    this.idempotent = idempotent;
+  }
+
+  /**
+   * Create the request.
+   *
+   * @param clazz the class that is being requested
+   * @param id the id of the request
+   * @param method the method to get the receptor
+   * @param parameters the parameters to execute in the receptor
+   * @param deadline the deadline of the request in epoch millis or null if it has no deadline
+   */
+  public StarboxRequest(
+      @NonNull Class<T> clazz,
+      @NonNull UUID id,
+      @NonNull String method,
+      @NonNull Map<String, ?> parameters,
+      Long deadline) {
+    this(clazz, id, method, parameters, deadline, false);
+  }
+
+  /**
+   * Create the request.
+   *
+   * @param clazz the class that is being requested
+   * @param id the id of the request
+   * @param method the method to get the receptor
+   * @param parameters the parameters to execute in the receptor
+   */
+  public StarboxRequest(
+      @NonNull Class<T> clazz,
+      @NonNull UUID id,
+      @NonNull String method,
+      @NonNull Map<String, ?> parameters) {
+    this(clazz, id, method, parameters, null);
   }
 
   /**
@@ -68,6 +115,16 @@ public class StarboxRequest<T> implements Request {
     this(clazz, UUID.randomUUID(), method, new HashMap<>());
   }
 
+  @Override
+  public @NonNull Optional<Long> getDeadline() {
+    return Optional.ofNullable(this.deadline);
+  }
+
+  @Override
+  public boolean isIdempotent() {
+    return this.idempotent;
+  }
+
   @Override
   public String toString() {
     return new StringJoiner(", ", StarboxRequest.class.getSimpleName() + "[", "]")
@@ -75,6 +132,8 @@ public class StarboxRequest<T> implements Request {
         .add("id=" + id)
         .add("method='" + method + "'")
         .add("parameters=" + parameters)
+        .add("deadline=" + deadline)
+        .add("idempotent=" + idempotent)
         .toString();
   }
 
@@ -0,0 +1,161 @@
+package me.googas.net.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A concurrent histogram of positive values with log-linear buckets, similar to HdrHistogram.
+ * Values under 64 are counted exactly and bigger values are counted in one of 32 buckets per power
+ * of two, so the value at any percentile is within about 3% of the recorded one.
+ *
+ * <p>The buckets are allocated once, recording a value only increments counters.
+ */
+public class Histogram {
+
+  /** The bits of precision of each power of two. */
+  private static final int SUB_BITS = 5;
+
+  /** The amount of buckets of each power of two. */
+  private static final int SUB_COUNT = 1 << Histogram.SUB_BITS;
+
+  /** The amount of buckets needed to count every positive long. */
+  private static final int BUCKETS = (64 - Histogram.SUB_BITS) * Histogram.SUB_COUNT;
+
+  /** The count of values in each bucket. */
+  @NonNull private final AtomicLongArray counts = new AtomicLongArray(Histogram.BUCKETS);
+
+  /** The sum of the values recorded. */
+  @NonNull private final LongAdder sum = new LongAdder();
+
+  /** The biggest value recorded. */
+  @NonNull private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   *
+   * @param value the value to record
+   */
+  public void record(long value) {
+    if (value < 0) value = 0;
+    this.counts.incrementAndGet(Histogram.index(value));
+    this.sum.add(value);
+    long max = this.max.get();
+    while (value > max && !this.max.compareAndSet(max, value)) {
+      max = this.max.get();
+    }
+  }
+
+  /**
+   * Get a snapshot of the values recorded so far.
+   *
+   * @return the snapshot
+   */
+  @NonNull
+  public Snapshot snapshot() {
+    long[] counts = new long[Histogram.BUCKETS];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = this.counts.get(i);
+      total += counts[i];
+    }
+    long max = this.max.get();
+    return new Snapshot(
+        total,
+        total == 0 ? 0 : this.sum.sum() / (double) total,
+        max,
+        Histogram.valueAt(counts, total, max, 0.5),
+        Histogram.valueAt(counts, total, max, 0.9),
+        Histogram.valueAt(counts, total, max, 0.99),
+        Histogram.valueAt(counts, total, max, 0.999));
+  }
+
+  /**
+   * Get the value at a percentile of the values recorded so far.
+   *
+   * @param percentile the percentile between 0 and 1
+   * @return the value at the percentile or 0 if no value has been recorded
+   */
+  public long getValueAt(double percentile) {
+    long[] counts = new long[Histogram.BUCKETS];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = this.counts.get(i);
+      total += counts[i];
+    }
+    return Histogram.valueAt(counts, total, this.max.get(), percentile);
+  }
+
+  private static int index(long value) {
+    if (value < Histogram.SUB_COUNT) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - Histogram.SUB_BITS;
+    return (shift + 1) * Histogram.SUB_COUNT + (int) (value >>> shift) - Histogram.SUB_COUNT;
+  }
+
+  private static long highest(int index) {
+    if (index < 2 * Histogram.SUB_COUNT - 1) return index;
+    int shift = index / Histogram.SUB_COUNT - 1;
+    long lowest = (long) (Histogram.SUB_COUNT + index % Histogram.SUB_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static long valueAt(@NonNull long[] counts, long total, long max, double percentile) {
+    if (total == 0) return 0;
+    long target = Math.max(1, (long) Math.ceil(total * percentile));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= target) return Math.min(Histogram.highest(i), max);
+    }
+    return max;
+  }
+
+  /** The values recorded by a histogram at some point. */
+  public static class Snapshot {
+
+    /** The amount of values recorded. */
+    @Getter private final long count;
+
+    /** The mean of the values recorded. */
+    @Getter private final double mean;
+
+    /** The biggest value recorded. */
+    @Getter private final long max;
+
+    /** The median of the values recorded. */
+    @Getter private final long p50;
+
+    /** The 90th percentile of the values recorded. */
+    @Getter private final long p90;
+
+    /** The 99th percentile of the values recorded. */
+    @Getter private final long p99;
+
+    /** The 99.9th percentile of the values recorded. */
+    @Getter private final long p999;
+
+    /**
+     * Create the snapshot.
+     *
+     * @param count the amount of values recorded
+     * @param mean the mean of the values recorded
+     * @param max the biggest value recorded
+     * @param p50 the median of the values recorded
+     * @param p90 the 90th percentile of the values recorded
+     * @param p99 the 99th percentile of the values recorded
+     * @param p999 the 99.9th percentile of the values recorded
+     */
+    public Snapshot(long count, double mean, long max, long p50, long p90, long p99, long p999) {
+      this.count = count;
+      this.mean = mean;
+      this.max = max;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.p999 = p999;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package me.googas.net.api.metrics;
+
+import lombok.NonNull;
+import me.googas.net.api.Messenger;
+
+/**
+ * Records what happens inside a {@link Messenger}: the requests accepted by each method, how long
+ * they take, how many are waiting, the bytes read and written, the requests that timed out and the
+ * messages that could not be decoded.
+ *
+ * <p>Every method does nothing by default and {@link #DISABLED} is used unless metrics are given,
+ * so messengers which do not record metrics only pay a call to an empty method. Implementations
+ * must be thread safe and should not allocate while recording.
+ *
+ * @see RequestMetrics
+ */
+public interface Metrics {
+
+  /** The metrics that record nothing. */
+  @NonNull Metrics DISABLED = new Metrics() {};
+
+  /**
+   * Get whether these metrics record something. If not messengers skip measuring the latency.
+   *
+   * @return true if the metrics record something
+   */
+  default boolean isEnabled() {
+    return false;
+  }
+
+  /**
+   * Records that a request has been accepted and is now in flight.
+   *
+   * @param method the method of the request
+   */
+  default void started(@NonNull String method) {}
+
+  /**
+   * Records that a request in flight has been responded.
+   *
+   * @param method the method of the request
+   * @param nanos the nanos since the request was accepted
+   * @param error whether the response is an error
+   */
+  default void completed(@NonNull String method, long nanos, boolean error) {}
+
+  /**
+   * Records that a request in flight has been rejected by the executor.
+   *
+   * @param method the method of the request
+   */
+  default void rejected(@NonNull String method) {}
+
+  /**
+   * Records that a request in flight has been skipped because its deadline passed.
+   *
+   * @param method the method of the request
+   */
+  default void expired(@NonNull String method) {}
+
+  /** Records that a request has been received for a method without receptor. */
+  default void unknown() {}
+
+  /**
+   * Records bytes read from the peer.
+   *
+   * @param bytes the amount of bytes read
+   */
+  default void read(long bytes) {}
+
+  /**
+   * Records bytes written to the peer.
+   *
+   * @param bytes the amount of bytes written
+   */
+  default void written(long bytes) {}
+
+  /** Records that a request sent has timed out waiting for its response. */
+  default void timeout() {}
+
+  /** Records that a message received could not be decoded. */
+  default void decodeError() {}
+
+  /**
+   * Get a snapshot of the metrics recorded so far.
+   *
+   * @return the snapshot
+   */
+  @NonNull
+  default MetricsSnapshot snapshot() {
+    return new MetricsSnapshot();
+  }
+}
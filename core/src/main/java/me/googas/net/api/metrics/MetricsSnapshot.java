@@ -0,0 +1,121 @@
+package me.googas.net.api.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The {@link Metrics} recorded at some point. Snapshots are plain objects so they may be exported
+ * with gson or any other serializer.
+ */
+public class MetricsSnapshot {
+
+  /** The metrics of each method. */
+  @NonNull @Getter private final Map<String, Method> methods;
+
+  /** The bytes read from peers. */
+  @Getter private final long bytesRead;
+
+  /** The bytes written to peers. */
+  @Getter private final long bytesWritten;
+
+  /** The requests sent which timed out waiting for their response. */
+  @Getter private final long timeouts;
+
+  /** The messages received which could not be decoded. */
+  @Getter private final long decodeErrors;
+
+  /** The requests received for methods without receptor. */
+  @Getter private final long unknown;
+
+  /**
+   * Create the snapshot.
+   *
+   * @param methods the metrics of each method
+   * @param bytesRead the bytes read from peers
+   * @param bytesWritten the bytes written to peers
+   * @param timeouts the requests sent which timed out waiting for their response
+   * @param decodeErrors the messages received which could not be decoded
+   * @param unknown the requests received for methods without receptor
+   */
+  public MetricsSnapshot(
+      @NonNull Map<String, Method> methods,
+      long bytesRead,
+      long bytesWritten,
+      long timeouts,
+      long decodeErrors,
+      long unknown) {
+    this.methods = Collections.unmodifiableMap(methods);
+    this.bytesRead = bytesRead;
+    this.bytesWritten = bytesWritten;
+    this.timeouts = timeouts;
+    this.decodeErrors = decodeErrors;
+    this.unknown = unknown;
+  }
+
+  /** Create an empty snapshot. */
+  public MetricsSnapshot() {
+    this(new HashMap<>(), 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Get the metrics of a method.
+   *
+   * @param method the method of the requests
+   * @return the metrics of the method or empty if it has not received requests
+   */
+  @NonNull
+  public Optional<Method> getMethod(@NonNull String method) {
+    return Optional.ofNullable(this.methods.get(method));
+  }
+
+  /** The metrics of the requests of a method. */
+  public static class Method {
+
+    /** The requests accepted. */
+    @Getter private final long requests;
+
+    /** The requests responded with an error. */
+    @Getter private final long errors;
+
+    /** The requests rejected by the executor. */
+    @Getter private final long rejected;
+
+    /** The requests skipped because their deadline passed. */
+    @Getter private final long expired;
+
+    /** The requests accepted which have not been responded yet. */
+    @Getter private final long inFlight;
+
+    /** The nanos from accepting the requests to responding them. */
+    @NonNull @Getter private final Histogram.Snapshot latency;
+
+    /**
+     * Create the metrics.
+     *
+     * @param requests the requests accepted
+     * @param errors the requests responded with an error
+     * @param rejected the requests rejected by the executor
+     * @param expired the requests skipped because their deadline passed
+     * @param inFlight the requests accepted which have not been responded yet
+     * @param latency the nanos from accepting the requests to responding them
+     */
+    public Method(
+        long requests,
+        long errors,
+        long rejected,
+        long expired,
+        long inFlight,
+        @NonNull Histogram.Snapshot latency) {
+      this.requests = requests;
+      this.errors = errors;
+      this.rejected = rejected;
+      this.expired = expired;
+      this.inFlight = inFlight;
+      this.latency = latency;
+    }
+  }
+}
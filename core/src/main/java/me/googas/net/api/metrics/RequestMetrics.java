@@ -0,0 +1,128 @@
+package me.googas.net.api.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.NonNull;
+
+/**
+ * {@link Metrics} kept in memory. The counters of a method are created the first time a request of
+ * that method is accepted, after that recording only increments counters. Only methods which have a
+ * receptor are recorded so peers cannot grow the metrics.
+ *
+ * <p>The same metrics may be shared by many messengers, for instance every connection of a pool.
+ */
+public class RequestMetrics implements Metrics {
+
+  /** The counters of each method. */
+  @NonNull private final ConcurrentHashMap<String, Counters> methods = new ConcurrentHashMap<>();
+
+  @NonNull private final LongAdder read = new LongAdder();
+  @NonNull private final LongAdder written = new LongAdder();
+  @NonNull private final LongAdder timeouts = new LongAdder();
+  @NonNull private final LongAdder decodeErrors = new LongAdder();
+  @NonNull private final LongAdder unknown = new LongAdder();
+
+  @NonNull
+  private Counters get(@NonNull String method) {
+    Counters counters = this.methods.get(method);
+    return counters == null
+        ? this.methods.computeIfAbsent(method, key -> new Counters())
+        : counters;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void started(@NonNull String method) {
+    Counters counters = this.get(method);
+    counters.requests.increment();
+    counters.inFlight.incrementAndGet();
+  }
+
+  @Override
+  public void completed(@NonNull String method, long nanos, boolean error) {
+    Counters counters = this.get(method);
+    counters.inFlight.decrementAndGet();
+    if (error) counters.errors.increment();
+    counters.latency.record(nanos);
+  }
+
+  @Override
+  public void rejected(@NonNull String method) {
+    Counters counters = this.get(method);
+    counters.inFlight.decrementAndGet();
+    counters.rejected.increment();
+  }
+
+  @Override
+  public void expired(@NonNull String method) {
+    Counters counters = this.get(method);
+    counters.inFlight.decrementAndGet();
+    counters.expired.increment();
+  }
+
+  @Override
+  public void unknown() {
+    this.unknown.increment();
+  }
+
+  @Override
+  public void read(long bytes) {
+    this.read.add(bytes);
+  }
+
+  @Override
+  public void written(long bytes) {
+    this.written.add(bytes);
+  }
+
+  @Override
+  public void timeout() {
+    this.timeouts.increment();
+  }
+
+  @Override
+  public void decodeError() {
+    this.decodeErrors.increment();
+  }
+
+  @Override
+  public @NonNull MetricsSnapshot snapshot() {
+    Map<String, MetricsSnapshot.Method> methods = new HashMap<>();
+    this.methods.forEach(
+        (method, counters) ->
+            methods.put(
+                method,
+                new MetricsSnapshot.Method(
+                    counters.requests.sum(),
+                    counters.errors.sum(),
+                    counters.rejected.sum(),
+                    counters.expired.sum(),
+                    counters.inFlight.get(),
+                    counters.latency.snapshot())));
+    return new MetricsSnapshot(
+        methods,
+        this.read.sum(),
+        this.written.sum(),
+        this.timeouts.sum(),
+        this.decodeErrors.sum(),
+        this.unknown.sum());
+  }
+
+  /** The counters of a method. */
+  private static class Counters {
+
+    @NonNull private final LongAdder requests = new LongAdder();
+    @NonNull private final LongAdder errors = new LongAdder();
+    @NonNull private final LongAdder rejected = new LongAdder();
+    @NonNull private final LongAdder expired = new LongAdder();
+    @NonNull private final AtomicLong inFlight = new AtomicLong();
+    @NonNull private final Histogram latency = new Histogram();
+  }
+}
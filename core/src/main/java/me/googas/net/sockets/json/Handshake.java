@@ -0,0 +1,102 @@
+package me.googas.net.sockets.json;
+
+import java.util.Optional;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.sockets.json.io.Framing;
+
+/**
+ * The options of a connection negotiated between a client and a server. The client sends a request
+ * with the method {@link #METHOD} and the options it would like to use as parameters, the server
+ * responds with the options that it accepted. Both switch to the accepted options right after the
+ * response.
+ *
+ * <p>Servers which do not know about the handshake respond with an error or an empty response, in
+ * that case the client keeps the default options.
+ *
+ * <p>The handshake is also used to authenticate the session of a client if the server is not set to
+ * authenticate each request.
+ */
+public class Handshake {
+
+  /** The method of the handshake request. */
+  @NonNull public static final String METHOD = "#handshake";
+
+  /** The framing of the messages. */
+  @NonNull @Getter private final Framing framing;
+
+  /**
+   * Whether large messages are compressed using DEFLATE. This requires {@link Framing#LENGTH}, the
+   * header of each frame tells whether its message is compressed.
+   */
+  @Getter private final boolean compression;
+
+  /**
+   * Whether the client has been authenticated for the rest of the session. Servers which
+   * authenticate every request instead of the session leave this null. The parameters of the
+   * handshake request are the credentials given to the {@link
+   * me.googas.net.api.auth.Authenticator}.
+   */
+  private final Boolean authenticated;
+
+  /**
+   * Create the handshake.
+   *
+   * @param framing the framing of the messages
+   * @param compression whether large messages are compressed
+   * @param authenticated whether the session is authenticated or null if it is not authenticated by
+   *     session
+   */
+  public Handshake(@NonNull Framing framing, boolean compression, Boolean authenticated) {
+    this.framing = framing;
+    this.compression = compression;
+    this.authenticated = authenticated;
+  }
+
+  /**
+   * Create the handshake.
+   *
+   * @param framing the framing of the messages
+   * @param compression whether large messages are compressed
+   */
+  public Handshake(@NonNull Framing framing, boolean compression) {
+    this(framing, compression, null);
+  }
+
+  /**
+   * Create the handshake without compression.
+   *
+   * @param framing the framing of the messages
+   */
+  public Handshake(@NonNull Framing framing) {
+    this(framing, false);
+  }
+
+  /** @deprecated this constructor may only be used by gson */
+  public Handshake() {
+    this(Framing.LINE);
+  }
+
+  /**
+   * Get whether the session has been authenticated.
+   *
+   * @return an {@link Optional} instance containing whether the session is authenticated or empty
+   *     if the session is not authenticated by session
+   */
+  @NonNull
+  public Optional<Boolean> getAuthenticated() {
+    return Optional.ofNullable(this.authenticated);
+  }
+
+  @Override
+  public String toString() {
+    return "Handshake{"
+        + "framing="
+        + this.framing
+        + ", compression="
+        + this.compression
+        + ", authenticated="
+        + this.authenticated
+        + '}';
+  }
+}
@@ -1,22 +1,20 @@
 package me.googas.net.sockets.json;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import java.io.BufferedReader;
+import com.google.gson.JsonElement;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.lang.reflect.Type;
 import java.net.Socket;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import lombok.NonNull;
 import me.googas.net.api.Error;
@@ -24,24 +22,34 @@ import me.googas.net.api.Messenger;
 import me.googas.net.api.exception.MessengerListenFailException;
 import me.googas.net.api.messages.AwaitingRequest;
 import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Publication;
 import me.googas.net.api.messages.Request;
 import me.googas.net.api.messages.Response;
 import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.api.metrics.Metrics;
+import me.googas.net.sockets.json.adapters.MessageReader;
 import me.googas.net.sockets.json.exception.JsonCommunicationException;
-import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
 import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
+import me.googas.net.sockets.json.io.FrameReader;
+import me.googas.net.sockets.json.io.FrameWriter;
+import me.googas.net.sockets.json.io.Framing;
 import me.googas.net.sockets.json.server.JsonClientThread;
+import me.googas.starbox.scheduler.TimingWheel;
 
 /** A {@link Messenger} that works with json messages. */
-public interface JsonMessenger extends Messenger, Runnable {
+public interface JsonMessenger extends RequestDispatcher<String>, Runnable {
 
   /**
-   * Prints a line in the output stream.
+   * Prints a message in the output stream using the current {@link Framing} of the output.
    *
-   * @param line the line to print
+   * @param line the message to print
    */
   default void printLine(@NonNull String line) {
-    this.getOutput().println(line + "\n---");
+    try {
+      this.getOutput().write(line);
+    } catch (IOException e) {
+      if (!this.isClosed()) this.getThrowableHandler().accept(e);
+    }
   }
 
   /**
@@ -52,9 +60,38 @@ public interface JsonMessenger extends Messenger, Runnable {
    */
   @NonNull
   default Optional<AwaitingRequest<?>> getRequest(@NonNull UUID uuid) {
-    return this.getRequests().keySet().stream()
-        .filter(awaiting -> awaiting.getRequest().getId().equals(uuid))
-        .findFirst();
+    return Optional.ofNullable(this.getRequests().get(uuid));
+  }
+
+  /**
+   * Adds a request to the requests waiting for a response and schedules its timeout in the {@link
+   * #getTimingWheel()}.
+   *
+   * @param awaiting the request that will wait for a response
+   */
+  default void await(@NonNull AwaitingRequest<?> awaiting) {
+    UUID id = awaiting.getRequest().getId();
+    long timeout = this.getTimeout();
+    this.getRequests().put(id, awaiting);
+    awaiting.setTimeout(
+        this.getTimingWheel()
+            .schedule(
+                timeout,
+                () -> {
+                  if (awaiting.done()) {
+                    this.getRequests().remove(id, awaiting);
+                    this.getMetrics().timeout();
+                    awaiting
+                        .getExceptionConsumer()
+                        .accept(
+                            new MessengerListenFailException(
+                                "The request "
+                                    + awaiting
+                                    + " has timed out after "
+                                    + timeout
+                                    + "ms"));
+                  }
+                }));
   }
 
   /**
@@ -69,7 +106,8 @@ public interface JsonMessenger extends Messenger, Runnable {
   }
 
   /**
-   * Get a receptor by its method.
+   * Get a receptor by its method. By default this iterates every receptor, messengers which keep
+   * their receptors in a {@link ReceptorSet} should use {@link ReceptorSet#get(String)} instead.
    *
    * @param method the method to match
    * @return the receptor if one with the method is found, null otherwise
@@ -81,35 +119,52 @@ public interface JsonMessenger extends Messenger, Runnable {
         .findFirst();
   }
 
+  @Override
+  @NonNull
+  default String toResponse(@NonNull ReceivedJsonRequest request, Object object, boolean error) {
+    Response<?> response = new Response<>(request.getId(), object);
+    response.setError(error);
+    return this.getGson().toJson(response);
+  }
+
+  @Override
+  @NonNull
+  default String toCachedResponse(@NonNull ReceivedJsonRequest request, @NonNull String fragment) {
+    return ResponseCache.toJson(this.getGson(), request.getId(), fragment);
+  }
+
   /**
-   * Accepts a request.
+   * Sends a response with {@link #printLine(String)}.
    *
-   * @param request the request to be accepted
+   * @param response the response as json
    */
-  default void acceptRequest(@NonNull ReceivedJsonRequest request) {
-    CompletableFuture.runAsync(
-        () -> {
-          Optional<JsonReceptor> optional = this.getReceptor(request);
-          Response<?> response;
-          if (optional.isPresent()) {
-            try {
-              JsonReceptor receptor = optional.get();
-              response =
-                  new Response<>(request.getId(), receptor.execute(this, request, this.getGson()));
-              response.setError(false);
-            } catch (JsonExternalCommunicationException e) {
-              response = new Response<>(request.getId(), new Error(e.getMessage()));
-            } catch (JsonInternalCommunicationException e) {
-              response =
-                  new Response<>(request.getId(), new Error("Internal Error: " + e.getMessage()));
-              this.getThrowableHandler().accept(e);
-            }
-          } else {
-            response = new Response<>(request.getId(), null);
-            response.setError(false);
-          }
-          this.printLine(this.getGson().toJson(response));
-        });
+  @Override
+  default void sendResponse(@NonNull String response) {
+    this.printLine(response);
+  }
+
+  /**
+   * Get the executor that runs the receptors of the requests accepted. If it rejects a request the
+   * messenger responds with an {@link Error} without running the receptor.
+   *
+   * @see me.googas.net.api.RequestExecutors
+   * @return the executor of requests
+   */
+  @NonNull
+  default Executor getExecutor() {
+    return ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Get the metrics in which this messenger records the requests it accepts, the bytes it reads and
+   * writes, the requests that time out and the messages that could not be decoded. By default
+   * nothing is recorded.
+   *
+   * @return the metrics
+   */
+  @NonNull
+  default Metrics getMetrics() {
+    return Metrics.DISABLED;
   }
 
   /**
@@ -127,10 +182,7 @@ public interface JsonMessenger extends Messenger, Runnable {
       @NonNull StarboxRequest<T> request,
       @NonNull Consumer<Optional<T>> consumer,
       @NonNull Consumer<Throwable> exception) {
-    this.getRequests()
-        .put(
-            new AwaitingRequest<>(request, request.getClazz(), consumer, exception),
-            System.currentTimeMillis());
+    this.await(new AwaitingRequest<>(request, request.getClazz(), consumer, exception));
     this.printLine(this.getGson().toJson(request));
   }
 
@@ -149,20 +201,20 @@ public interface JsonMessenger extends Messenger, Runnable {
   void setLastMessage(long millis);
 
   /**
-   * Get the output line to send messages.
+   * Get the output to send messages.
    *
-   * @return the output line to send messages
+   * @return the output to send messages
    */
   @NonNull
-  PrintWriter getOutput();
+  FrameWriter getOutput();
 
   /**
-   * Get the input line to receive messages.
+   * Get the input to receive messages.
    *
-   * @return the input line
+   * @return the input
    */
   @NonNull
-  BufferedReader getInput();
+  FrameReader getInput();
 
   /**
    * Get the receptors that the messenger is capable of using.
@@ -187,35 +239,32 @@ public interface JsonMessenger extends Messenger, Runnable {
   boolean isClosed();
 
   /**
-   * Get the request that this messenger has sent and the time when they were sent.
+   * Get the requests that this messenger has sent and are waiting for a response mapped by their
+   * id. This map must be safe to use from many threads.
    *
-   * @return the request that this messenger has sent
+   * @return the requests that this messenger has sent
    */
   @NonNull
-  Map<AwaitingRequest<?>, Long> getRequests();
+  Map<UUID, AwaitingRequest<?>> getRequests();
 
-  /** Checks if there's request that can are taking too low. if so timeout */
+  /**
+   * Get the wheel in which the timeouts of the requests are scheduled.
+   *
+   * @return the timing wheel
+   */
+  @NonNull
+  default TimingWheel getTimingWheel() {
+    return TimingWheel.getShared();
+  }
+
+  /**
+   * Checks if there's request that are taking too long. if so timeout.
+   *
+   * @deprecated requests are timed out by the {@link #getTimingWheel()}, this only advances it
+   */
+  @Deprecated
   default void checkTimeout() {
-    Set<AwaitingRequest<?>> toRemove = new HashSet<>();
-    HashMap<AwaitingRequest<?>, Long> copy = new HashMap<>(this.getRequests());
-    copy.forEach(
-        (request, start) -> {
-          if (System.currentTimeMillis() - start > this.getTimeout()) {
-            toRemove.add(request);
-            request
-                .getExceptionConsumer()
-                .accept(
-                    new MessengerListenFailException(
-                        "The request "
-                            + request
-                            + " has timed out after "
-                            + this.getTimeout()
-                            + "ms"));
-          }
-        });
-    if (!toRemove.isEmpty()) {
-      toRemove.forEach(request -> this.getRequests().remove(request));
-    }
+    this.getTimingWheel().advance();
   }
 
   /**
@@ -242,14 +291,6 @@ public interface JsonMessenger extends Messenger, Runnable {
   @NonNull
   Consumer<Throwable> getThrowableHandler();
 
-  /**
-   * Get the string builder that the messenger can use.
-   *
-   * @return the string builder
-   */
-  @NonNull
-  StringBuilder getBuilder();
-
   @Override
   default void run() {
     while (true) {
@@ -270,10 +311,7 @@ public interface JsonMessenger extends Messenger, Runnable {
   @Override
   default <T> void sendRequest(
       @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
-    this.getRequests()
-        .put(
-            new AwaitingRequest<>(request, request.getClazz(), consumer),
-            System.currentTimeMillis());
+    this.await(new AwaitingRequest<>(request, request.getClazz(), consumer));
     this.printLine(this.getGson().toJson(request));
   }
 
@@ -287,109 +325,181 @@ public interface JsonMessenger extends Messenger, Runnable {
   @Override
   default void listen() throws MessengerListenFailException {
     try {
-      StringBuilder builder = this.getBuilder();
-      builder.setLength(0);
-      String line;
-      boolean closed = false;
-      boolean timedOut = false;
-      while ((line = this.getInput().readLine()) != null
-          || (closed = this.getInput().read() == -1)
-          || (timedOut =
-              !this.getRequests().isEmpty()
-                  && (System.currentTimeMillis() - this.getLastMessage()) > this.getTimeout())) {
-        if (closed) break;
-        if (timedOut) {
-          this.checkTimeout();
-          break;
-        }
-        if (line.startsWith("Invalid Message:")) {
-          this.getThrowableHandler().accept(new JsonCommunicationException(line));
-          builder.setLength(0);
-          break;
-        }
-        if (line.equalsIgnoreCase("---") || !this.getInput().ready()) {
-          break;
-        } else {
-          builder.append(line).append("\n");
-        }
+      String message = this.getInput().read();
+      if (message == null) {
+        if (!this.isClosed()) this.close();
+        return;
       }
       this.setLastMessage(System.currentTimeMillis());
-      if (builder.length() != 0) {
-        Gson gson = this.getGson();
-        String json = builder.toString();
-        try {
-          Message message = gson.fromJson(json, Message.class);
-          if (message instanceof ReceivedJsonRequest) {
-            this.acceptRequest((ReceivedJsonRequest) message);
-          } else if (message instanceof Response) {
-            Optional<AwaitingRequest<?>> optional = this.getRequest(message.getId());
-            JsonObject object = gson.fromJson(json, JsonObject.class);
-            if (optional.isPresent()) {
-              AwaitingRequest<?> awaitingRequest = optional.get();
-              if (((Response<?>) message).isError()) {
-                if (!object.get("object").isJsonNull()) {
-                  awaitingRequest
-                      .getExceptionConsumer()
-                      .accept(
-                          new JsonInternalCommunicationException(
-                              gson.fromJson(object.get("object"), Error.class).getCause()));
-                } else {
-                  awaitingRequest.getConsumer().accept(Optional.empty());
-                }
-              } else {
-                if (!object.get("object").isJsonNull()) {
-                  awaitingRequest
-                      .getConsumer()
-                      .accept(
-                          Optional.ofNullable(
-                              gson.fromJson(
-                                  object.get("object"), (Type) awaitingRequest.getClazz())));
-                } else {
-                  awaitingRequest.getConsumer().accept(Optional.empty());
-                }
-              }
-              this.getRequests().remove(awaitingRequest);
-            }
-          }
-        } catch (RuntimeException e) {
-          if (this instanceof JsonClientThread) {
-            this.printLine("Invalid Message: " + e.getMessage());
+      this.handle(message);
+    } catch (IOException e) {
+      if (!this.isClosed()) throw new MessengerListenFailException(null, e);
+    }
+  }
+
+  /**
+   * Handles a message that has already been read from the input. If the message is a request it
+   * will be accepted and if it is a response it will be given to its {@link AwaitingRequest}. The
+   * message may also be a batch: a json array of messages, each of them is handled in order and the
+   * requests are scheduled at once so they run concurrently.
+   *
+   * <p>This must be called from the thread reading the input: a {@link Handshake} may change the
+   * framing of the input before the next message is read.
+   *
+   * @param json the message as a json string
+   */
+  @SuppressWarnings("unchecked")
+  default void handle(@NonNull String json) {
+    if (json.startsWith("Invalid Message:")) {
+      this.getThrowableHandler().accept(new JsonCommunicationException(json.trim()));
+      return;
+    }
+    try {
+      List<Message> messages =
+          MessageReader.readAll(
+              this.getGson(),
+              json,
+              id -> {
+                AwaitingRequest<?> awaiting = this.getRequests().get(id);
+                return awaiting == null ? null : awaiting.getClazz();
+              });
+      for (Message message : messages) {
+        if (message instanceof ReceivedJsonRequest) {
+          ReceivedJsonRequest request = (ReceivedJsonRequest) message;
+          if (request.getMethod().equals(Handshake.METHOD)) {
+            this.acceptHandshake(request);
           } else {
-            this.getThrowableHandler().accept(e);
+            this.acceptRequest(request);
           }
+        } else if (message instanceof Response) {
+          AwaitingRequest<?> awaitingRequest = this.getRequests().remove(message.getId());
+          if (awaitingRequest != null && awaitingRequest.done()) {
+            this.complete(awaitingRequest, (Response<?>) message);
+          }
+        } else if (message instanceof Publication) {
+          this.acceptPublication((Publication<JsonElement>) message);
         }
       }
-    } catch (IOException e) {
-      if (!this.isClosed()) throw new MessengerListenFailException(null, e);
+    } catch (RuntimeException e) {
+      this.getMetrics().decodeError();
+      if (this instanceof JsonClientThread) {
+        this.printLine("Invalid Message: " + e.getMessage());
+      } else {
+        this.getThrowableHandler().accept(e);
+      }
     }
   }
 
+  /**
+   * Accepts an object published to a topic to which this messenger is subscribed. By default
+   * publications are ignored.
+   *
+   * @param publication the publication with the object as a json element
+   */
+  default void acceptPublication(@NonNull Publication<JsonElement> publication) {}
+
+  /**
+   * Completes a request with the response that it was waiting for. The object of the response must
+   * have been read as the type of the request or as an {@link Error} if the response is an error.
+   *
+   * @param awaiting the request waiting for the response
+   * @param response the response
+   * @param <T> the type of object that the request is waiting for
+   */
+  @SuppressWarnings("unchecked")
+  default <T> void complete(@NonNull AwaitingRequest<T> awaiting, @NonNull Response<?> response) {
+    Optional<?> object = response.getObject();
+    if (response.isError()) {
+      if (object.isPresent()) {
+        awaiting
+            .getExceptionConsumer()
+            .accept(new JsonInternalCommunicationException(((Error) object.get()).getCause()));
+      } else {
+        awaiting.getConsumer().accept(Optional.empty());
+      }
+    } else {
+      awaiting.getConsumer().accept((Optional<T>) object);
+    }
+  }
+
+  /**
+   * Accepts a {@link Handshake} request. The response is written with the current framing and the
+   * accepted framing is used for every message after it, in both the input and the output.
+   * Compression is accepted if the messenger has a {@link #getCompressionThreshold()} and the
+   * framing is {@link Framing#LENGTH}. The session is authenticated with {@link
+   * #authenticate(ReceivedJsonRequest)}.
+   *
+   * <p>The peer does not send messages until it gets the response, so the input switches its
+   * framing before the response is written. That way the handshake may be accepted outside of the
+   * thread that reads the input.
+   *
+   * @param request the handshake request
+   */
+  default void acceptHandshake(@NonNull ReceivedJsonRequest request) {
+    Gson gson = this.getGson();
+    Handshake requested = gson.fromJson(gson.toJsonTree(request.getParameters()), Handshake.class);
+    Framing framing = requested.getFraming() == null ? Framing.LINE : requested.getFraming();
+    int threshold = this.getCompressionThreshold();
+    Handshake accepted =
+        new Handshake(
+            framing,
+            requested.isCompression() && framing == Framing.LENGTH && threshold >= 0,
+            this.authenticate(request));
+    Response<Handshake> response = new Response<>(request.getId(), accepted);
+    response.setError(false);
+    this.getInput().setFraming(accepted.getFraming());
+    FrameWriter output = this.getOutput();
+    synchronized (output) {
+      this.printLine(gson.toJson(response));
+      output.setFraming(accepted.getFraming());
+      if (accepted.isCompression()) output.setCompressionThreshold(threshold);
+    }
+  }
+
+  /**
+   * Authenticates the session of the messenger using the parameters of a {@link Handshake} as
+   * credentials. By default sessions are not authenticated.
+   *
+   * @param handshake the handshake request
+   * @return whether the session has been authenticated or null if this messenger does not
+   *     authenticate sessions
+   */
+  default Boolean authenticate(@NonNull ReceivedJsonRequest handshake) {
+    return null;
+  }
+
+  /**
+   * Get the minimum size in bytes of the messages that this messenger compresses once compression
+   * has been negotiated in a {@link Handshake}.
+   *
+   * @return the threshold in bytes or a negative number if this messenger does not accept
+   *     compression
+   */
+  default int getCompressionThreshold() {
+    return -1;
+  }
+
+  @Override
+  default <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+    this.sendRequest(request, future::complete, future::completeExceptionally);
+    return future;
+  }
+
   @Override
   default <T> Optional<T> sendRequest(@NonNull StarboxRequest<T> request)
       throws MessengerListenFailException {
-    long start = System.currentTimeMillis();
-    AtomicReference<T> reference = new AtomicReference<>();
-    AtomicReference<Throwable> throwable = new AtomicReference<>();
-    AtomicBoolean received = new AtomicBoolean(false);
-    this.sendRequest(
-        request,
-        obj -> {
-          obj.ifPresent(reference::set);
-          received.set(true);
-        },
-        exception -> {
-          received.set(true);
-          throwable.set(exception);
-        });
-    while (!received.get()) {
-      if ((System.currentTimeMillis() - start) > this.getTimeout()) {
-        throw new MessengerListenFailException(
-            "The request " + request + " has timed out after " + this.getTimeout() + "ms");
-      }
-    }
-    if (throwable.get() != null) {
-      throw new MessengerListenFailException(null, throwable.get());
+    try {
+      return this.sendRequestAsync(request).get(this.getTimeout(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new MessengerListenFailException(
+          "The request " + request + " has timed out after " + this.getTimeout() + "ms");
+    } catch (ExecutionException e) {
+      throw new MessengerListenFailException(null, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessengerListenFailException("Interrupted while waiting for " + request, e);
     }
-    return Optional.ofNullable(reference.get());
   }
 }
@@ -1,6 +1,7 @@
 package me.googas.net.sockets.json;
 
 import com.google.gson.Gson;
+import java.util.Optional;
 import lombok.NonNull;
 import me.googas.net.api.Messenger;
 import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
@@ -38,4 +39,15 @@ public interface JsonReceptor {
    */
   @NonNull
   String getRequestMethod();
+
+  /**
+   * Get the cache of the results of this receptor. If it has one, requests whose parameters have a
+   * cached result get it without executing the receptor.
+   *
+   * @return the cache or empty if results are not cached
+   */
+  @NonNull
+  default Optional<ResponseCache> getCache() {
+    return Optional.empty();
+  }
 }
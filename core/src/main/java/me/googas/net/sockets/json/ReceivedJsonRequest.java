@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import lombok.Getter;
 import lombok.NonNull;
@@ -22,18 +23,38 @@ public class ReceivedJsonRequest implements Request {
   /** The parameters provided by the messenger. */
   @NonNull @Getter private final Map<String, JsonElement> parameters;
 
+  /** The deadline of the request in epoch millis or null if it has no deadline. */
+  private final Long deadline;
+
   /**
    * Create the request.
    *
    * @param id the id the request given by the messenger
    * @param method the method to get the receptor
    * @param parameters the parameters for the receptor
+   * @param deadline the deadline of the request in epoch millis or null if it has no deadline
    */
   public ReceivedJsonRequest(
-      @NonNull UUID id, @NonNull String method, @NonNull Map<String, JsonElement> parameters) {
+      @NonNull UUID id,
+      @NonNull String method,
+      @NonNull Map<String, JsonElement> parameters,
+      Long deadline) {
     this.id = id;
     this.method = method;
     this.parameters = parameters;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Create the request.
+   *
+   * @param id the id the request given by the messenger
+   * @param method the method to get the receptor
+   * @param parameters the parameters for the receptor
+   */
+  public ReceivedJsonRequest(
+      @NonNull UUID id, @NonNull String method, @NonNull Map<String, JsonElement> parameters) {
+    this(id, method, parameters, null);
   }
 
   /** @deprecated this must be used only by gson */
@@ -41,6 +62,11 @@ public class ReceivedJsonRequest implements Request {
     this(UUID.randomUUID(), "", new HashMap<>());
   }
 
+  @Override
+  public @NonNull Optional<Long> getDeadline() {
+    return Optional.ofNullable(this.deadline);
+  }
+
   @Override
   public String toString() {
     return "ReceivedJsonRequest{"
@@ -51,6 +77,8 @@ public class ReceivedJsonRequest implements Request {
         + '\''
         + ", parameters="
         + this.parameters
+        + ", deadline="
+        + this.deadline
         + '}';
   }
 
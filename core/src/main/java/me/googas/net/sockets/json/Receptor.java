@@ -18,4 +18,22 @@ public @interface Receptor {
    */
   @NonNull
   String value();
+
+  /**
+   * The millis during which the results of the receptor are cached, keyed by the parameters of the
+   * request. Only receptors whose result depends on nothing but their parameters should be cached,
+   * receptors that take the messenger or the request cannot be cached. By default results are not
+   * cached.
+   *
+   * @see ResponseCache
+   * @return the millis that results are cached for or 0 to not cache them
+   */
+  long cache() default 0;
+
+  /**
+   * The maximum amount of results cached if {@link #cache()} is greater than 0.
+   *
+   * @return the maximum amount of results
+   */
+  int cacheSize() default 1024;
 }
@@ -0,0 +1,137 @@
+package me.googas.net.sockets.json;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.NonNull;
+
+/**
+ * A set of {@link JsonReceptor} which keeps an immutable table of the receptors mapped by their
+ * {@link JsonReceptor#getRequestMethod()} in lower case. Getting the receptor of a method is a
+ * single lookup no matter how many receptors are registered. The set is copy-on-write: every change
+ * rebuilds the table, so it is meant for receptors which are rarely changed after the messenger is
+ * started.
+ *
+ * <p>If two receptors have the same method, ignoring case, the one added first is used.
+ */
+public class ReceptorSet extends AbstractSet<JsonReceptor> {
+
+  /** The receptors in the set. */
+  @NonNull private volatile Set<JsonReceptor> receptors = Collections.emptySet();
+
+  /** The receptors mapped by their method in lower case. */
+  @NonNull private volatile Map<String, JsonReceptor> table = Collections.emptyMap();
+
+  /**
+   * Create the set.
+   *
+   * @param receptors the initial receptors of the set
+   */
+  public ReceptorSet(@NonNull Collection<? extends JsonReceptor> receptors) {
+    this.addAll(receptors);
+  }
+
+  /** Create an empty set. */
+  public ReceptorSet() {}
+
+  @NonNull
+  private static String fold(@NonNull String method) {
+    return method.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Get the receptor of a method. This ignores the case of the method.
+   *
+   * @param method the method to match
+   * @return the receptor if one with the method is found, empty otherwise
+   */
+  @NonNull
+  public Optional<JsonReceptor> get(@NonNull String method) {
+    Map<String, JsonReceptor> table = this.table;
+    JsonReceptor receptor = table.get(method);
+    if (receptor == null) receptor = table.get(ReceptorSet.fold(method));
+    return Optional.ofNullable(receptor);
+  }
+
+  private void publish(@NonNull Set<JsonReceptor> receptors) {
+    Map<String, JsonReceptor> table = new HashMap<>();
+    for (JsonReceptor receptor : receptors) {
+      table.putIfAbsent(ReceptorSet.fold(receptor.getRequestMethod()), receptor);
+    }
+    this.receptors = Collections.unmodifiableSet(receptors);
+    this.table = Collections.unmodifiableMap(table);
+  }
+
+  @Override
+  public synchronized boolean add(@NonNull JsonReceptor receptor) {
+    if (this.receptors.contains(receptor)) return false;
+    Set<JsonReceptor> copy = new LinkedHashSet<>(this.receptors);
+    copy.add(receptor);
+    this.publish(copy);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean addAll(@NonNull Collection<? extends JsonReceptor> receptors) {
+    Set<JsonReceptor> copy = new LinkedHashSet<>(this.receptors);
+    if (!copy.addAll(receptors)) return false;
+    this.publish(copy);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean remove(Object object) {
+    if (!this.receptors.contains(object)) return false;
+    Set<JsonReceptor> copy = new LinkedHashSet<>(this.receptors);
+    copy.remove(object);
+    this.publish(copy);
+    return true;
+  }
+
+  @Override
+  public synchronized void clear() {
+    this.publish(new LinkedHashSet<>());
+  }
+
+  @Override
+  public boolean contains(Object object) {
+    return this.receptors.contains(object);
+  }
+
+  @Override
+  public @NonNull Iterator<JsonReceptor> iterator() {
+    Iterator<JsonReceptor> iterator = this.receptors.iterator();
+    return new Iterator<JsonReceptor>() {
+      private JsonReceptor last;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public JsonReceptor next() {
+        return this.last = iterator.next();
+      }
+
+      @Override
+      public void remove() {
+        if (this.last == null) throw new IllegalStateException();
+        ReceptorSet.this.remove(this.last);
+        this.last = null;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return this.receptors.size();
+  }
+}
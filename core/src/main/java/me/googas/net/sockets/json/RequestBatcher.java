@@ -0,0 +1,135 @@
+package me.googas.net.sockets.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.api.messages.AwaitingRequest;
+import me.googas.net.api.messages.RequestBuilder;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.starbox.scheduler.TimingWheel;
+
+/**
+ * Collects requests and sends them in a single batch: a json array of requests which the receiver
+ * accepts at once, so their receptors run concurrently. The batch is sent once it has {@code
+ * maxItems} requests or {@code delay} millis after the first request was added, whichever happens
+ * first.
+ *
+ * <p>Each request still gets its own response and times out on its own, its timeout starts when the
+ * batch is sent.
+ */
+public class RequestBatcher {
+
+  /** The messenger that sends the batches. */
+  @NonNull @Getter private final JsonMessenger messenger;
+
+  /** The maximum amount of requests in a batch. */
+  @Getter private final int maxItems;
+
+  /** The millis to wait for more requests before sending a batch. */
+  @Getter private final long delay;
+
+  /** The requests waiting to be sent. */
+  @NonNull private List<AwaitingRequest<?>> pending = new ArrayList<>();
+
+  /** The scheduled send of the pending requests. */
+  private TimingWheel.Timeout scheduled;
+
+  /**
+   * Create the batcher.
+   *
+   * @param messenger the messenger that sends the batches
+   * @param maxItems the maximum amount of requests in a batch
+   * @param delay the millis to wait for more requests before sending a batch
+   */
+  public RequestBatcher(@NonNull JsonMessenger messenger, int maxItems, long delay) {
+    if (maxItems < 1) throw new IllegalArgumentException("A batch must hold a request");
+    this.messenger = messenger;
+    this.maxItems = maxItems;
+    this.delay = delay;
+  }
+
+  /**
+   * Adds a request to the next batch.
+   *
+   * @param request the request to add
+   * @param <T> the type of object requested
+   * @return a future completed with the response of the request
+   */
+  @NonNull
+  public <T> CompletableFuture<Optional<T>> add(@NonNull StarboxRequest<T> request) {
+    CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+    AwaitingRequest<T> awaiting =
+        new AwaitingRequest<>(
+            request, request.getClazz(), future::complete, future::completeExceptionally);
+    List<AwaitingRequest<?>> batch = null;
+    synchronized (this) {
+      this.pending.add(awaiting);
+      if (this.pending.size() >= this.maxItems) {
+        batch = this.take();
+      } else if (this.scheduled == null) {
+        this.scheduled = this.messenger.getTimingWheel().schedule(this.delay, this::expire);
+      }
+    }
+    if (batch != null) this.send(batch);
+    return future;
+  }
+
+  /**
+   * Adds a request to the next batch.
+   *
+   * @param builder the builder of the request to add
+   * @param <T> the type of object requested
+   * @return a future completed with the response of the request
+   */
+  @NonNull
+  public <T> CompletableFuture<Optional<T>> add(@NonNull RequestBuilder<T> builder) {
+    return this.add(builder.build());
+  }
+
+  /** Sends the pending requests right away. */
+  public void flush() {
+    List<AwaitingRequest<?>> batch;
+    synchronized (this) {
+      if (this.pending.isEmpty()) return;
+      batch = this.take();
+    }
+    this.send(batch);
+  }
+
+  /**
+   * Sends the pending requests once the delay passes. Sending writes to the socket so it is handed
+   * to the executor of the messenger instead of running in the thread of the timing wheel.
+   */
+  private void expire() {
+    try {
+      this.messenger.getExecutor().execute(this::flush);
+    } catch (RejectedExecutionException e) {
+      this.flush();
+    }
+  }
+
+  @NonNull
+  private List<AwaitingRequest<?>> take() {
+    List<AwaitingRequest<?>> batch = this.pending;
+    this.pending = new ArrayList<>();
+    if (this.scheduled != null) {
+      this.scheduled.cancel();
+      this.scheduled = null;
+    }
+    return batch;
+  }
+
+  private void send(@NonNull List<AwaitingRequest<?>> batch) {
+    StringBuilder json = new StringBuilder("[");
+    for (AwaitingRequest<?> awaiting : batch) {
+      if (json.length() > 1) json.append(',');
+      json.append(this.messenger.getGson().toJson(awaiting.getRequest()));
+      this.messenger.await(awaiting);
+    }
+    this.messenger.printLine(json.append(']').toString());
+  }
+}
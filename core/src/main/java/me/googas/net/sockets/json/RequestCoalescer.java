@@ -0,0 +1,186 @@
+package me.googas.net.sockets.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import me.googas.net.api.messages.AwaitingRequest;
+import me.googas.net.api.messages.StarboxRequest;
+
+/**
+ * Coalesces identical requests while they are in flight. The first request for a method, class and
+ * parameters is sent and the identical requests made before its response arrives are not sent, they
+ * get the same response or exception as the first one.
+ *
+ * <p>Parameters are compared by their json, the keys of objects are sorted so the order in which
+ * parameters were put does not matter. Requests are only coalesced if they have the same deadline
+ * or neither has one. Only requests without side effects should be coalesced.
+ */
+public class RequestCoalescer {
+
+  /** The messenger that sends the requests. */
+  @NonNull private final JsonMessenger messenger;
+
+  /** The requests in flight mapped by their key. */
+  @NonNull private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+  /** The requests which were not sent because an identical one was in flight. */
+  @NonNull private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Create the coalescer.
+   *
+   * @param messenger the messenger that sends the requests
+   */
+  public RequestCoalescer(@NonNull JsonMessenger messenger) {
+    this.messenger = messenger;
+  }
+
+  /**
+   * Sends a request unless an identical one is in flight, in that case the consumers get the
+   * response of the one in flight.
+   *
+   * @param request the request to send
+   * @param consumer the method to execute when the result is given
+   * @param exception the method to execute in case an exception is thrown
+   * @param <T> the type of object requested
+   */
+  public <T> void send(
+      @NonNull StarboxRequest<T> request,
+      @NonNull Consumer<Optional<T>> consumer,
+      @NonNull Consumer<Throwable> exception) {
+    String key = this.key(request);
+    Waiter waiter = new Waiter(consumer, exception);
+    Flight[] created = new Flight[1];
+    Flight flight =
+        this.flights.compute(
+            key,
+            (k, current) -> {
+              if (current == null) current = created[0] = new Flight();
+              current.waiters.add(waiter);
+              return current;
+            });
+    if (created[0] == null) {
+      this.coalesced.increment();
+      return;
+    }
+    this.messenger.await(
+        new AwaitingRequest<>(
+            request,
+            request.getClazz(),
+            result -> this.land(key, flight).forEach(each -> each.accept(result)),
+            e -> this.land(key, flight).forEach(each -> each.fail(e))));
+    this.messenger.printLine(this.messenger.getGson().toJson(request));
+  }
+
+  /**
+   * Get the amount of requests which were not sent because an identical one was in flight.
+   *
+   * @return the amount of requests coalesced
+   */
+  public long getCoalesced() {
+    return this.coalesced.sum();
+  }
+
+  /**
+   * Removes a flight so no more requests attach to it.
+   *
+   * @param key the key of the flight
+   * @param flight the flight that got its response
+   * @return the waiters of the flight
+   */
+  @NonNull
+  private List<Waiter> land(@NonNull String key, @NonNull Flight flight) {
+    this.flights.remove(key, flight);
+    // Waiters are only added inside compute, after the removal the list cannot change
+    return flight.waiters;
+  }
+
+  @NonNull
+  private String key(@NonNull StarboxRequest<?> request) {
+    StringBuilder builder =
+        new StringBuilder(request.getMethod())
+            .append('\0')
+            .append(request.getClazz().getName())
+            .append('\0');
+    // A copy whose deadline passed is dropped by the receiver, so only equal deadlines coalesce
+    request.getDeadline().ifPresent(deadline -> builder.append(deadline));
+    builder.append('\0');
+    RequestCoalescer.canonical(
+        this.messenger.getGson().toJsonTree(request.getParameters()), builder);
+    return builder.toString();
+  }
+
+  private static void canonical(@NonNull JsonElement element, @NonNull StringBuilder builder) {
+    if (element.isJsonObject()) {
+      Map<String, JsonElement> sorted = new TreeMap<>();
+      for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+        sorted.put(entry.getKey(), entry.getValue());
+      }
+      builder.append('{');
+      sorted.forEach(
+          (key, value) -> {
+            if (builder.charAt(builder.length() - 1) != '{') builder.append(',');
+            builder.append(new JsonPrimitive(key)).append(':');
+            RequestCoalescer.canonical(value, builder);
+          });
+      builder.append('}');
+    } else if (element.isJsonArray()) {
+      builder.append('[');
+      boolean first = true;
+      for (JsonElement value : (JsonArray) element) {
+        if (!first) builder.append(',');
+        first = false;
+        RequestCoalescer.canonical(value, builder);
+      }
+      builder.append(']');
+    } else {
+      builder.append(element);
+    }
+  }
+
+  /** A request in flight and the consumers waiting for its response. */
+  private static class Flight {
+
+    @NonNull private final List<Waiter> waiters = new ArrayList<>();
+  }
+
+  /** The consumers of a request waiting for the response of a flight. */
+  private class Waiter {
+
+    @NonNull private final Consumer<Optional<?>> consumer;
+    @NonNull private final Consumer<Throwable> exception;
+
+    @SuppressWarnings("unchecked")
+    private <T> Waiter(
+        @NonNull Consumer<Optional<T>> consumer, @NonNull Consumer<Throwable> exception) {
+      this.consumer = (Consumer<Optional<?>>) (Consumer<?>) consumer;
+      this.exception = exception;
+    }
+
+    private void accept(@NonNull Optional<?> result) {
+      try {
+        this.consumer.accept(result);
+      } catch (RuntimeException e) {
+        RequestCoalescer.this.messenger.getThrowableHandler().accept(e);
+      }
+    }
+
+    private void fail(@NonNull Throwable throwable) {
+      try {
+        this.exception.accept(throwable);
+      } catch (RuntimeException e) {
+        RequestCoalescer.this.messenger.getThrowableHandler().accept(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package me.googas.net.sockets.json;
+
+import com.google.gson.Gson;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import me.googas.net.api.Error;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.metrics.Metrics;
+import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
+import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
+
+/**
+ * A {@link Messenger} which runs the requests it receives in {@link JsonReceptor}. The requests are
+ * looked up, admitted, answered from the cache of the receptor or scheduled in the executor the
+ * same way by every messenger, messengers only have to create their responses and send them.
+ *
+ * @param <R> the type of the responses that the messenger sends
+ */
+public interface RequestDispatcher<R> extends Messenger {
+
+  /**
+   * Accepts a request. The receptor is looked up before the request is scheduled in the {@link
+   * #getExecutor()}, if there's no receptor for its method the request fails immediately with an
+   * {@link Error}.
+   *
+   * <p>Requests which {@link ReceivedJsonRequest#getDeadline()} has passed are skipped without a
+   * response, both when they are accepted and when they leave the queue of the executor, as the
+   * messenger that sent them is no longer waiting.
+   *
+   * <p>If the receptor has a {@link JsonReceptor#getCache()} with a result for the parameters of
+   * the request, the cached result is sent right away without scheduling the request.
+   *
+   * @param request the request to be accepted
+   */
+  default void acceptRequest(@NonNull ReceivedJsonRequest request) {
+    this.acceptRequest(request, this.getExecutor());
+  }
+
+  /**
+   * Accepts a request running its receptor in the given executor. Messengers which already accept
+   * their requests in the {@link #getExecutor()} use {@code Runnable::run} so the receptor does not
+   * wait in the queue twice.
+   *
+   * @param request the request to be accepted
+   * @param executor the executor to run the receptor in
+   */
+  default void acceptRequest(@NonNull ReceivedJsonRequest request, @NonNull Executor executor) {
+    Metrics metrics = this.getMetrics();
+    Optional<JsonReceptor> optional = this.getReceptor(request);
+    if (!optional.isPresent()) {
+      metrics.unknown();
+      if (request.isExpired()) return;
+      this.sendResponse(
+          this.toResponse(
+              request,
+              new Error("There's no receptor for the method '" + request.getMethod() + "'"),
+              true));
+      return;
+    }
+    JsonReceptor receptor = optional.get();
+    String method = receptor.getRequestMethod();
+    long start = metrics.isEnabled() ? System.nanoTime() : 0;
+    metrics.started(method);
+    if (request.isExpired()) {
+      metrics.expired(method);
+      return;
+    }
+    Optional<String> rejection = this.admit(request);
+    if (rejection.isPresent()) {
+      metrics.rejected(method);
+      this.sendResponse(
+          this.toResponse(
+              request,
+              new Error(
+                  "The request '" + request.getMethod() + "' was rejected: " + rejection.get()),
+              true));
+      return;
+    }
+    ResponseCache cache = receptor.getCache().orElse(null);
+    String key = cache == null ? null : ResponseCache.key(request);
+    String cached = key == null ? null : cache.get(key);
+    if (cached != null) {
+      this.release(request);
+      this.sendResponse(this.toCachedResponse(request, cached));
+      if (metrics.isEnabled()) metrics.completed(method, System.nanoTime() - start, false);
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            R response;
+            try {
+              response = this.respond(request, receptor, cache, key, start);
+            } finally {
+              this.release(request);
+            }
+            if (response != null) this.sendResponse(response);
+          });
+    } catch (RejectedExecutionException e) {
+      this.release(request);
+      metrics.rejected(method);
+      this.sendResponse(
+          this.toResponse(
+              request, new Error("The request '" + request.getMethod() + "' was rejected"), true));
+    }
+  }
+
+  /**
+   * Runs the receptor of a request that was scheduled. The response is sent once the request is
+   * released, so the peer cannot send another request before this one stops counting as running.
+   *
+   * @param request the request to run
+   * @param receptor the receptor of the request
+   * @param cache the cache of the results of the receptor or null if they are not cached
+   * @param key the key of the request in the cache or null if results are not cached
+   * @param start the {@link System#nanoTime()} when the request was accepted
+   * @return the response or null if the request expired
+   */
+  default R respond(
+      @NonNull ReceivedJsonRequest request,
+      @NonNull JsonReceptor receptor,
+      ResponseCache cache,
+      String key,
+      long start) {
+    Metrics metrics = this.getMetrics();
+    String method = receptor.getRequestMethod();
+    if (request.isExpired()) {
+      metrics.expired(method);
+      return null;
+    }
+    Gson gson = this.getGson();
+    R response;
+    boolean error = true;
+    try {
+      Object result = receptor.execute(this, request, gson);
+      if (cache != null && key != null) {
+        String fragment = gson.toJson(result);
+        cache.put(key, fragment);
+        response = this.toCachedResponse(request, fragment);
+      } else {
+        response = this.toResponse(request, result, false);
+      }
+      error = false;
+    } catch (JsonExternalCommunicationException e) {
+      response = this.toResponse(request, new Error(e.getMessage()), true);
+    } catch (JsonInternalCommunicationException e) {
+      response = this.toResponse(request, new Error("Internal Error: " + e.getMessage()), true);
+      this.getThrowableHandler().accept(e);
+    }
+    if (metrics.isEnabled()) metrics.completed(method, System.nanoTime() - start, error);
+    return response;
+  }
+
+  /**
+   * Admits a request before it is scheduled. Requests which are not admitted are rejected with an
+   * {@link Error} without running their receptor. By default every request is admitted.
+   *
+   * @param request the request to admit
+   * @return empty if the request was admitted or the reason why it was rejected
+   */
+  @NonNull
+  default Optional<String> admit(@NonNull ReceivedJsonRequest request) {
+    return Optional.empty();
+  }
+
+  /**
+   * Releases a request that was admitted, once its receptor has run or it was not scheduled.
+   *
+   * @param request the request to release
+   */
+  default void release(@NonNull ReceivedJsonRequest request) {}
+
+  /**
+   * Creates the response to a request.
+   *
+   * @param request the request to respond
+   * @param object the result of the receptor or the {@link Error} of the request
+   * @param error whether the request failed
+   * @return the response
+   */
+  @NonNull
+  R toResponse(@NonNull ReceivedJsonRequest request, Object object, boolean error);
+
+  /**
+   * Creates the response to a request with a result from the {@link ResponseCache} of its receptor.
+   *
+   * @param request the request to respond
+   * @param fragment the result as json
+   * @return the response
+   */
+  @NonNull
+  R toCachedResponse(@NonNull ReceivedJsonRequest request, @NonNull String fragment);
+
+  /**
+   * Sends a response to the messenger that sent the request.
+   *
+   * @param response the response to send
+   */
+  void sendResponse(@NonNull R response);
+
+  /**
+   * Get the matching receptor for a request.
+   *
+   * @param request the request that needs a receptor
+   * @return the receptor if found else empty
+   */
+  @NonNull
+  Optional<JsonReceptor> getReceptor(@NonNull Request request);
+
+  /**
+   * Get the executor that runs the receptors of the requests accepted. If it rejects a request the
+   * messenger responds with an {@link Error} without running the receptor.
+   *
+   * @return the executor of requests
+   */
+  @NonNull
+  Executor getExecutor();
+
+  /**
+   * Get the metrics in which this messenger records the requests it accepts.
+   *
+   * @return the metrics
+   */
+  @NonNull
+  Metrics getMetrics();
+
+  /**
+   * Get the gson to bind the parameters of the requests and serialize results.
+   *
+   * @return the gson instance
+   */
+  @NonNull
+  Gson getGson();
+
+  /**
+   * Get the handler of the exceptions thrown by receptors.
+   *
+   * @return the throwable handler
+   */
+  @NonNull
+  Consumer<Throwable> getThrowableHandler();
+}
@@ -0,0 +1,155 @@
+package me.googas.net.sockets.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Caches the responses of a receptor whose result only depends on the parameters of the request.
+ * The result is kept as its serialized json so a hit neither executes the receptor nor serializes
+ * the result again. Errors are never cached.
+ *
+ * <p>Entries expire once the time to live passes. When the cache is full the expired entries are
+ * removed first and then arbitrary ones, until a tenth of the cache is free.
+ *
+ * @see Receptor#cache()
+ */
+public class ResponseCache {
+
+  /** The time to live of the entries in nanos. */
+  private final long ttl;
+
+  /** The maximum amount of entries. */
+  @Getter private final int size;
+
+  /** The entries mapped by the parameters of the request. */
+  @NonNull private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  @NonNull private final LongAdder hits = new LongAdder();
+  @NonNull private final LongAdder misses = new LongAdder();
+
+  /**
+   * Create the cache.
+   *
+   * @param ttl the time to live of the entries in millis
+   * @param size the maximum amount of entries
+   */
+  public ResponseCache(long ttl, int size) {
+    if (ttl <= 0 || size <= 0) {
+      throw new IllegalArgumentException("The time to live and size must be greater than 0");
+    }
+    this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+    this.size = size;
+  }
+
+  /**
+   * Get the key of a request. This is its parameters sorted by name.
+   *
+   * @param request the request to get the key
+   * @return the key
+   */
+  @NonNull
+  public static String key(@NonNull ReceivedJsonRequest request) {
+    Map<String, JsonElement> parameters = request.getParameters();
+    if (parameters.isEmpty()) return "";
+    StringBuilder builder = new StringBuilder();
+    new TreeMap<>(parameters)
+        .forEach((name, value) -> builder.append(name).append('=').append(value).append('\0'));
+    return builder.toString();
+  }
+
+  /**
+   * Serialize a successful response with a result that was already serialized.
+   *
+   * @param gson the gson to serialize the id of the response
+   * @param id the id of the response
+   * @param result the result as json
+   * @return the response as json
+   */
+  @NonNull
+  public static String toJson(@NonNull Gson gson, @NonNull UUID id, @NonNull String result) {
+    return "{\"id\":" + gson.toJson(id) + ",\"error\":false,\"object\":" + result + "}";
+  }
+
+  /**
+   * Get the result cached for a key.
+   *
+   * @param key the key of the request
+   * @return the result as json or null if it is not cached or has expired
+   */
+  public String get(@NonNull String key) {
+    Entry entry = this.entries.get(key);
+    if (entry != null && System.nanoTime() - entry.expires < 0) {
+      this.hits.increment();
+      return entry.json;
+    }
+    if (entry != null) this.entries.remove(key, entry);
+    this.misses.increment();
+    return null;
+  }
+
+  /**
+   * Caches the result for a key.
+   *
+   * @param key the key of the request
+   * @param json the result as json
+   */
+  public void put(@NonNull String key, @NonNull String json) {
+    this.entries.put(key, new Entry(json, System.nanoTime() + this.ttl));
+    if (this.entries.size() > this.size) this.evict();
+  }
+
+  /**
+   * Get the amount of requests that got a cached result.
+   *
+   * @return the amount of hits
+   */
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Get the amount of requests that did not get a cached result.
+   *
+   * @return the amount of misses
+   */
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  /** Removes every entry. */
+  public void clear() {
+    this.entries.clear();
+  }
+
+  private void evict() {
+    long now = System.nanoTime();
+    int target = this.size - Math.max(1, this.size / 10);
+    this.entries.values().removeIf(entry -> now - entry.expires >= 0);
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (this.entries.size() > target && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /** A result and when it expires. */
+  private static class Entry {
+
+    @NonNull private final String json;
+    private final long expires;
+
+    private Entry(@NonNull String json, long expires) {
+      this.json = json;
+      this.expires = expires;
+    }
+  }
+}
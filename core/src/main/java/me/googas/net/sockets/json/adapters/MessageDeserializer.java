@@ -8,7 +8,9 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import java.lang.reflect.Type;
+import java.util.UUID;
 import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Publication;
 import me.googas.net.api.messages.Response;
 import me.googas.net.sockets.json.ReceivedJsonRequest;
 
@@ -27,6 +29,11 @@ public class MessageDeserializer implements JsonSerializer<Message>, JsonDeseria
       JsonObject jsonObject = json.getAsJsonObject();
       if (jsonObject.get("method") != null) {
         return context.deserialize(jsonObject, ReceivedJsonRequest.class);
+      } else if (jsonObject.get("topic") != null) {
+        return new Publication<>(
+            context.deserialize(jsonObject.get("id"), UUID.class),
+            jsonObject.get("topic").getAsString(),
+            jsonObject.get("object"));
       } else {
         return context.deserialize(jsonObject, Response.class);
       }
@@ -0,0 +1,178 @@
+package me.googas.net.sockets.json.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import lombok.NonNull;
+import me.googas.net.api.Error;
+import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Publication;
+import me.googas.net.api.messages.Response;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
+
+/**
+ * Reads messages in a single pass using a {@link JsonReader}. Unlike {@link MessageDeserializer}
+ * this does not build a tree of the message: the id and error flag of a {@link Response} are read
+ * first and its object is bound directly to the type that is being waited for.
+ *
+ * <p>If the object of a response comes before its id or error flag, which may happen with peers
+ * that serialize responses in a different order, the object is kept as a {@link JsonElement} and
+ * converted once the whole message has been read.
+ */
+public class MessageReader {
+
+  /** The type of the parameters of a request. */
+  @NonNull
+  private static final TypeToken<Map<String, JsonElement>> PARAMETERS =
+      new TypeToken<Map<String, JsonElement>>() {};
+
+  /**
+   * Reads a message.
+   *
+   * @param gson the gson instance to read the values of the message
+   * @param json the message as a json string
+   * @param types gets the type of the object of the response with the given id or null if the
+   *     response is not being waited for, in which case its object is skipped
+   * @return a {@link ReceivedJsonRequest} if the message has a method, a {@link Publication} of a
+   *     json element if it has a topic, else a {@link Response}
+   * @throws JsonParseException if the message is not a json object or is malformed
+   */
+  @NonNull
+  public static Message read(
+      @NonNull Gson gson, @NonNull String json, @NonNull Function<UUID, Type> types) {
+    try (JsonReader reader = gson.newJsonReader(new StringReader(json))) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        throw new JsonParseException("Messages must be json objects");
+      }
+      return MessageReader.read(gson, reader, types);
+    } catch (IOException | IllegalStateException e) {
+      throw new JsonParseException(e);
+    }
+  }
+
+  /**
+   * Reads a message or a batch of messages. A batch is a json array in which each element is a
+   * message.
+   *
+   * @param gson the gson instance to read the values of the messages
+   * @param json the message or batch as a json string
+   * @param types gets the type of the object of the response with the given id or null if the
+   *     response is not being waited for, in which case its object is skipped
+   * @return the messages read in the order they were in the batch
+   * @throws JsonParseException if the message is not a json object or array or is malformed
+   */
+  @NonNull
+  public static List<Message> readAll(
+      @NonNull Gson gson, @NonNull String json, @NonNull Function<UUID, Type> types) {
+    try (JsonReader reader = gson.newJsonReader(new StringReader(json))) {
+      JsonToken token = reader.peek();
+      if (token == JsonToken.BEGIN_OBJECT) {
+        return Collections.singletonList(MessageReader.read(gson, reader, types));
+      } else if (token != JsonToken.BEGIN_ARRAY) {
+        throw new JsonParseException("Messages must be json objects or arrays");
+      }
+      List<Message> messages = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        messages.add(MessageReader.read(gson, reader, types));
+      }
+      reader.endArray();
+      return messages;
+    } catch (IOException | IllegalStateException e) {
+      throw new JsonParseException(e);
+    }
+  }
+
+  @NonNull
+  private static Message read(
+      @NonNull Gson gson, @NonNull JsonReader reader, @NonNull Function<UUID, Type> types)
+      throws IOException {
+    TypeAdapter<UUID> ids = gson.getAdapter(UUID.class);
+    UUID id = null;
+    String method = null;
+    Map<String, JsonElement> parameters = null;
+    Long deadline = null;
+    String topic = null;
+    Boolean error = null;
+    Object object = null;
+    JsonElement pending = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id":
+          id = ids.read(reader);
+          break;
+        case "method":
+          method = reader.nextString();
+          break;
+        case "parameters":
+          parameters = gson.getAdapter(MessageReader.PARAMETERS).read(reader);
+          break;
+        case "topic":
+          topic = reader.nextString();
+          break;
+        case "deadline":
+          if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+          } else {
+            deadline = reader.nextLong();
+          }
+          break;
+        case "error":
+          error = reader.nextBoolean();
+          break;
+        case "object":
+          if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+          } else if (topic != null || id == null || error == null) {
+            pending = gson.getAdapter(JsonElement.class).read(reader);
+          } else {
+            Type type = MessageReader.typeOf(id, error, types);
+            if (type == null) {
+              reader.skipValue();
+            } else {
+              object = gson.getAdapter(TypeToken.get(type)).read(reader);
+            }
+          }
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (id == null) throw new JsonParseException("Messages must have an id");
+    if (method != null) {
+      return new ReceivedJsonRequest(
+          id, method, parameters == null ? new HashMap<>() : parameters, deadline);
+    }
+    if (topic != null) return new Publication<>(id, topic, pending);
+    boolean isError = error == null || error;
+    if (pending != null) {
+      Type type = MessageReader.typeOf(id, isError, types);
+      if (type != null) object = gson.fromJson(pending, type);
+    }
+    Response<Object> response = new Response<>(id, object);
+    response.setError(isError);
+    return response;
+  }
+
+  private static Type typeOf(@NonNull UUID id, boolean error, @NonNull Function<UUID, Type> types) {
+    Type type = types.apply(id);
+    if (type == null) return null;
+    return error ? Error.class : type;
+  }
+}
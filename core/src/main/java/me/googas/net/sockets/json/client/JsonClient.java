@@ -2,43 +2,69 @@ package me.googas.net.sockets.json.client;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import java.io.BufferedReader;
+import com.google.gson.JsonElement;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
+import me.googas.net.api.exception.MessengerListenFailException;
 import me.googas.net.api.messages.AwaitingRequest;
 import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Publication;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.api.metrics.Metrics;
+import me.googas.net.api.metrics.RequestMetrics;
+import me.googas.net.sockets.json.Handshake;
 import me.googas.net.sockets.json.JsonMessenger;
 import me.googas.net.sockets.json.JsonReceptor;
+import me.googas.net.sockets.json.ReceptorSet;
+import me.googas.net.sockets.json.RequestCoalescer;
 import me.googas.net.sockets.json.adapters.MessageDeserializer;
+import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
+import me.googas.net.sockets.json.io.FrameReader;
+import me.googas.net.sockets.json.io.FrameWriter;
+import me.googas.net.sockets.json.io.Framing;
 import me.googas.net.sockets.json.reflect.ReflectJsonReceptor;
 import me.googas.net.sockets.json.server.JsonSocketServer;
+import me.googas.net.sockets.json.server.Topics;
 
 /** This object represents a client that can be used to connect to the {@link JsonSocketServer}. */
 public class JsonClient extends Thread implements JsonMessenger {
 
-  /** The builder to build json strings. */
-  @NonNull @Getter private final StringBuilder builder = new StringBuilder();
-
   /** The socket that the client is using. */
   @NonNull @Getter private final Socket socket;
 
   /** The output channel. */
-  @NonNull @Getter private final PrintWriter output;
+  @NonNull @Getter private final FrameWriter output;
   /** The input channel. */
-  @NonNull @Getter private final BufferedReader input;
+  @NonNull @Getter private final FrameReader input;
 
   /**
    * The throwable handler in case something goes wrong and the user wants to handle it differently.
@@ -48,17 +74,51 @@ public class JsonClient extends Thread implements JsonMessenger {
   /** The gson instance to serialize and deserialize objects. */
   @NonNull @Getter private final Gson gson;
 
-  /** The receptors to accept requests. */
-  @NonNull @Getter private final Set<JsonReceptor> receptors;
+  /** The receptors to accept requests mapped by their method. */
+  @NonNull @Getter private final ReceptorSet receptors;
 
   /** The request that are waiting for a response. */
-  @NonNull @Getter private final HashMap<AwaitingRequest<?>, Long> requests = new HashMap<>();
+  @NonNull @Getter private final Map<UUID, AwaitingRequest<?>> requests = new ConcurrentHashMap<>();
 
   /** The time to timeout requests. */
   @Getter private final long timeout;
 
+  /** The executor that runs the requests of the server. */
+  @NonNull @Getter @Setter private Executor executor = ForkJoinPool.commonPool();
+
+  /**
+   * The minimum size in bytes of the messages that the client compresses if compression is
+   * negotiated. Negative if the client does not want compression.
+   */
+  @Getter @Setter private int compressionThreshold = -1;
+
+  /** The consumers of the objects published to each topic to which the client is subscribed. */
+  @NonNull
+  private final Map<String, List<Consumer<JsonElement>>> subscriptions = new ConcurrentHashMap<>();
+
+  /** The coalescer of identical requests or null if requests are not coalesced. */
+  private volatile RequestCoalescer coalescer;
+
+  /** The metrics in which the client records its requests and bytes. */
+  @NonNull @Getter private Metrics metrics = Metrics.DISABLED;
+
+  /**
+   * The messages written while a handshake waits for its response, they are written once the
+   * framing is negotiated. Null if there's no handshake waiting.
+   */
+  private Queue<String> held;
+
+  /**
+   * Writers take the read lock to write a message or hold it, a handshake takes the write lock to
+   * start holding messages and to write them once it has been responded.
+   */
+  @NonNull private final ReadWriteLock holding = new ReentrantReadWriteLock();
+
+  /** The listeners to run once the client is closed. */
+  @NonNull private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
   /** Whether the messenger is closed. */
-  @Getter @Setter private boolean closed;
+  @Getter @Setter private volatile boolean closed;
 
   /** The millis of when the last message was sent. */
   @Getter @Setter private long lastMessage;
@@ -79,8 +139,8 @@ public class JsonClient extends Thread implements JsonMessenger {
    */
   protected JsonClient(
       @NonNull Socket socket,
-      @NonNull PrintWriter output,
-      @NonNull BufferedReader input,
+      @NonNull FrameWriter output,
+      @NonNull FrameReader input,
       @NonNull Consumer<Throwable> throwableHandler,
       @NonNull Gson gson,
       @NonNull Set<JsonReceptor> receptors,
@@ -92,7 +152,7 @@ public class JsonClient extends Thread implements JsonMessenger {
     this.input = input;
     this.throwableHandler = throwableHandler;
     this.gson = gson;
-    this.receptors = receptors;
+    this.receptors = new ReceptorSet(receptors);
     this.timeout = timeout;
     this.closed = closed;
     this.lastMessage = lastMessage;
@@ -119,13 +179,10 @@ public class JsonClient extends Thread implements JsonMessenger {
     this.socket = socket;
     this.throwableHandler = throwableHandler;
     this.gson = gson;
-    this.receptors = receptors;
+    this.receptors = new ReceptorSet(receptors);
     this.timeout = timeout;
-    this.output =
-        new PrintWriter(
-            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
-    this.input =
-        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    this.output = new FrameWriter(new BufferedOutputStream(socket.getOutputStream()));
+    this.input = new FrameReader(new BufferedInputStream(socket.getInputStream()));
   }
 
   /**
@@ -147,10 +204,30 @@ public class JsonClient extends Thread implements JsonMessenger {
     this(socket, throwableHandler, gson, new HashSet<>(), timeout);
   }
 
+  /**
+   * Adds a listener which runs once the client is closed, either by calling {@link #close()} or
+   * because the connection was lost. If the client is already closed the listener runs right away.
+   *
+   * @param listener the listener to run
+   */
+  public void onClose(@NonNull Runnable listener) {
+    this.closeListeners.add(listener);
+    if (this.closed && this.closeListeners.remove(listener)) listener.run();
+  }
+
+  /**
+   * Closes the client. The requests waiting for a response fail right away instead of waiting for
+   * their timeout.
+   */
   @Override
   public void close() {
+    if (this.closed) return;
     this.setClosed(true);
-    this.output.close();
+    try {
+      this.output.close();
+    } catch (IOException e) {
+      this.throwableHandler.accept(e);
+    }
     try {
       this.input.close();
     } catch (IOException e) {
@@ -162,7 +239,28 @@ public class JsonClient extends Thread implements JsonMessenger {
       this.throwableHandler.accept(e);
     }
     this.receptors.clear();
+    this.requests
+        .values()
+        .forEach(
+            awaiting -> {
+              if (awaiting.done()) {
+                awaiting
+                    .getExceptionConsumer()
+                    .accept(
+                        new MessengerListenFailException(
+                            "The connection was closed before " + awaiting + " was responded"));
+              }
+            });
     this.requests.clear();
+    this.closeListeners.forEach(
+        listener -> {
+          if (!this.closeListeners.remove(listener)) return;
+          try {
+            listener.run();
+          } catch (RuntimeException e) {
+            this.throwableHandler.accept(e);
+          }
+        });
   }
 
   /**
@@ -182,6 +280,279 @@ public class JsonClient extends Thread implements JsonMessenger {
     JsonMessenger.super.run();
   }
 
+  /**
+   * Negotiates the {@link Framing} of the messages with the server.
+   *
+   * @see #handshake(Handshake)
+   * @param framing the framing that the client would like to use
+   * @return the framing accepted by the server
+   * @throws MessengerListenFailException if the server did not respond in time or the thread is
+   *     interrupted while waiting for the response
+   */
+  @NonNull
+  public Framing handshake(@NonNull Framing framing) throws MessengerListenFailException {
+    return this.handshake(new Handshake(framing)).getFraming();
+  }
+
+  /**
+   * Negotiates the options of the connection with the server. This blocks until the server responds
+   * or the request times out, messages sent in the meantime are held and written once the framing
+   * is negotiated. Servers which do not know about the {@link Handshake} respond with an error and
+   * keep using {@link Framing#LINE} without compression.
+   *
+   * <p>If the server does not respond in time the framing it uses is unknown, so the client is
+   * closed.
+   *
+   * <p>If compression is accepted the client compresses the messages larger than its {@link
+   * #getCompressionThreshold()}.
+   *
+   * <p>The client must be listening for messages before calling this.
+   *
+   * @param options the options that the client would like to use
+   * @return the options accepted by the server
+   * @throws MessengerListenFailException if the server did not respond in time or the thread is
+   *     interrupted while waiting for the response
+   */
+  @NonNull
+  public Handshake handshake(@NonNull Handshake options) throws MessengerListenFailException {
+    return this.handshake(options, new HashMap<>());
+  }
+
+  /**
+   * Negotiates the options of the connection with the server and authenticates the session. The
+   * credentials are sent as parameters of the handshake so servers which authenticate sessions can
+   * check them once, see {@link Handshake#getAuthenticated()}.
+   *
+   * @see #handshake(Handshake)
+   * @param options the options that the client would like to use
+   * @param credentials the credentials to authenticate the session
+   * @return the options accepted by the server
+   * @throws MessengerListenFailException if the server did not respond in time or the thread is
+   *     interrupted while waiting for the response
+   */
+  @NonNull
+  public Handshake handshake(@NonNull Handshake options, @NonNull Map<String, ?> credentials)
+      throws MessengerListenFailException {
+    Map<String, Object> parameters = new HashMap<>(credentials);
+    parameters.put("framing", options.getFraming());
+    parameters.put("compression", options.isCompression());
+    StarboxRequest<Handshake> request =
+        new StarboxRequest<>(Handshake.class, Handshake.METHOD, parameters);
+    CompletableFuture<Handshake> future = new CompletableFuture<>();
+    Lock lock = this.holding.writeLock();
+    lock.lock();
+    try {
+      if (this.held != null) {
+        throw new MessengerListenFailException("A handshake is already waiting for a response");
+      }
+      this.held = new ConcurrentLinkedQueue<>();
+      this.await(
+          new AwaitingRequest<>(
+              request,
+              Handshake.class,
+              optional -> {
+                Handshake accepted = optional.orElseGet(() -> new Handshake(Framing.LINE));
+                this.input.setFraming(accepted.getFraming());
+                future.complete(accepted);
+              },
+              exception -> {
+                if (exception instanceof JsonInternalCommunicationException) {
+                  // The server responded it does not know the handshake
+                  future.complete(new Handshake(Framing.LINE));
+                } else {
+                  future.completeExceptionally(exception);
+                }
+              }));
+      JsonMessenger.super.printLine(this.gson.toJson(request));
+    } finally {
+      lock.unlock();
+    }
+    Handshake accepted;
+    try {
+      accepted = future.get();
+    } catch (InterruptedException | ExecutionException e) {
+      // The messages stay held until the server responds, if it never does the framing is unknown
+      future.whenComplete(
+          (negotiated, failure) -> {
+            if (failure == null) {
+              this.negotiated(negotiated);
+            } else {
+              this.close();
+            }
+          });
+      throw new MessengerListenFailException("Handshake with the server failed", e);
+    }
+    this.negotiated(accepted);
+    return accepted;
+  }
+
+  /**
+   * Writes a message unless a handshake is waiting for its response, in that case the message is
+   * written once the framing has been negotiated.
+   *
+   * @param line the message to print
+   */
+  @Override
+  public void printLine(@NonNull String line) {
+    Lock lock = this.holding.readLock();
+    lock.lock();
+    try {
+      Queue<String> held = this.held;
+      if (held == null) {
+        JsonMessenger.super.printLine(line);
+      } else {
+        held.add(line);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Uses the options accepted by the server to write and writes the messages held meanwhile.
+   *
+   * @param accepted the options accepted by the server
+   */
+  private void negotiated(@NonNull Handshake accepted) {
+    Lock lock = this.holding.writeLock();
+    lock.lock();
+    try {
+      this.output.setFraming(accepted.getFraming());
+      if (accepted.isCompression() && this.compressionThreshold >= 0) {
+        this.output.setCompressionThreshold(this.compressionThreshold);
+      }
+      Queue<String> held = this.held;
+      this.held = null;
+      String line;
+      while (held != null && (line = held.poll()) != null) {
+        JsonMessenger.super.printLine(line);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public @NonNull Optional<JsonReceptor> getReceptor(@NonNull String method) {
+    return this.receptors.get(method);
+  }
+
+  /**
+   * Set the metrics in which the client records the requests it accepts, the bytes it reads and
+   * writes, the requests that time out and the messages that could not be decoded.
+   *
+   * @param metrics the new metrics
+   */
+  public void setMetrics(@NonNull Metrics metrics) {
+    this.metrics = metrics;
+    this.output.setMetrics(metrics);
+    this.input.getDecoder().setMetrics(metrics);
+  }
+
+  /**
+   * Set whether identical requests are coalesced while they are in flight: requests with the same
+   * method, class and parameters as one waiting for its response are not sent and get its response
+   * instead. Coalescing should only be enabled if the requests of the client have no side effects.
+   *
+   * @see RequestCoalescer
+   * @param coalescing whether to coalesce requests
+   */
+  public void setCoalescing(boolean coalescing) {
+    this.coalescer = coalescing ? new RequestCoalescer(this) : null;
+  }
+
+  /**
+   * Get the coalescer of identical requests.
+   *
+   * @return the coalescer or empty if requests are not coalesced
+   */
+  @NonNull
+  public Optional<RequestCoalescer> getCoalescer() {
+    return Optional.ofNullable(this.coalescer);
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request,
+      @NonNull Consumer<Optional<T>> consumer,
+      @NonNull Consumer<Throwable> exception) {
+    RequestCoalescer coalescer = this.coalescer;
+    if (coalescer == null) {
+      JsonMessenger.super.sendRequest(request, consumer, exception);
+    } else {
+      coalescer.send(request, consumer, exception);
+    }
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+    RequestCoalescer coalescer = this.coalescer;
+    if (coalescer == null) {
+      JsonMessenger.super.sendRequest(request, consumer);
+    } else {
+      coalescer.send(request, consumer, Throwable::printStackTrace);
+    }
+  }
+
+  /**
+   * Subscribes to a topic of the server. The consumer gets each object published to the topic, it
+   * runs in the {@link #getExecutor()} of the client.
+   *
+   * @see me.googas.net.sockets.json.server.JsonSocketServer#publish(String, Object)
+   * @param topic the topic to subscribe to
+   * @param clazz the class of the objects published to the topic
+   * @param consumer the consumer of the objects published
+   * @param <T> the type of the objects published
+   * @throws MessengerListenFailException if the server could not subscribe the client
+   */
+  public <T> void subscribe(
+      @NonNull String topic, @NonNull Class<T> clazz, @NonNull Consumer<T> consumer)
+      throws MessengerListenFailException {
+    Consumer<JsonElement> listener =
+        element -> consumer.accept(element == null ? null : this.gson.fromJson(element, clazz));
+    List<Consumer<JsonElement>> listeners =
+        this.subscriptions.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>());
+    listeners.add(listener);
+    try {
+      Request.builder(Boolean.class, Topics.SUBSCRIBE).put("topic", topic).send(this);
+    } catch (MessengerListenFailException e) {
+      listeners.remove(listener);
+      throw e;
+    }
+  }
+
+  /**
+   * Unsubscribes from a topic of the server. Every consumer of the topic stops getting its objects.
+   *
+   * @param topic the topic to unsubscribe from
+   * @throws MessengerListenFailException if the server could not unsubscribe the client
+   */
+  public void unsubscribe(@NonNull String topic) throws MessengerListenFailException {
+    this.subscriptions.remove(topic);
+    Request.builder(Boolean.class, Topics.UNSUBSCRIBE).put("topic", topic).send(this);
+  }
+
+  @Override
+  public void acceptPublication(@NonNull Publication<JsonElement> publication) {
+    List<Consumer<JsonElement>> listeners = this.subscriptions.get(publication.getTopic());
+    if (listeners == null || listeners.isEmpty()) return;
+    try {
+      this.executor.execute(
+          () -> {
+            for (Consumer<JsonElement> listener : listeners) {
+              try {
+                listener.accept(publication.getObject());
+              } catch (RuntimeException e) {
+                this.throwableHandler.accept(e);
+              }
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      this.throwableHandler.accept(e);
+    }
+  }
+
   /** This class is used to create instances of clients in a neat way. */
   public static class ClientBuilder {
 
@@ -191,6 +562,13 @@ public class JsonClient extends Thread implements JsonMessenger {
     @NonNull private GsonBuilder gson;
     @NonNull private Consumer<Throwable> handler;
     private long timeout;
+    @NonNull private Framing framing;
+    private int compressionThreshold;
+    @NonNull private final Map<String, Object> credentials;
+    @NonNull private Executor executor;
+    private long highWaterMark;
+    @NonNull private Metrics metrics;
+    private boolean coalescing;
 
     /**
      * Create the builder.
@@ -205,6 +583,12 @@ public class JsonClient extends Thread implements JsonMessenger {
       this.gson = new GsonBuilder().registerTypeAdapter(Message.class, new MessageDeserializer());
       this.handler = Throwable::printStackTrace;
       this.timeout = 1000;
+      this.framing = Framing.LINE;
+      this.compressionThreshold = -1;
+      this.credentials = new HashMap<>();
+      this.executor = ForkJoinPool.commonPool();
+      this.highWaterMark = Long.MAX_VALUE;
+      this.metrics = Metrics.DISABLED;
     }
 
     /**
@@ -270,6 +654,106 @@ public class JsonClient extends Thread implements JsonMessenger {
       return this;
     }
 
+    /**
+     * Set the executor that will run the requests of the server. By default this is the common
+     * {@link ForkJoinPool}.
+     *
+     * @see me.googas.net.api.RequestExecutors
+     * @param executor the new executor
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder executor(@NonNull Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Set the metrics in which the client records its requests and bytes. Connections of a {@link
+     * #pool(int)} share them.
+     *
+     * @see RequestMetrics
+     * @param metrics the metrics to record
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder metrics(@NonNull Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Coalesce identical requests while they are in flight. Connections of a {@link #pool(int)}
+     * coalesce their own requests.
+     *
+     * @see JsonClient#setCoalescing(boolean)
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder coalesce() {
+      this.coalescing = true;
+      return this;
+    }
+
+    /**
+     * Set the maximum amount of bytes queued to be written to the server before the threads writing
+     * to it have to wait for the server to read. By default threads never wait.
+     *
+     * @see FrameWriter
+     * @param bytes the high-water mark in bytes
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder highWaterMark(long bytes) {
+      if (bytes <= 0) throw new IllegalArgumentException("The high-water mark must be > 0");
+      this.highWaterMark = bytes;
+      return this;
+    }
+
+    /**
+     * Adds a credential to authenticate the session of the client. Credentials are sent in a {@link
+     * Handshake} when the client starts, servers which authenticate sessions check them once for
+     * the rest of the connection.
+     *
+     * @param key the name of the credential
+     * @param value the value of the credential
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder credentials(@NonNull String key, @NonNull Object value) {
+      this.credentials.put(key, value);
+      return this;
+    }
+
+    /**
+     * Negotiate DEFLATE compression with the server. This also sets the framing to {@link
+     * Framing#LENGTH} as compression requires it. Messages smaller than the threshold are not
+     * compressed.
+     *
+     * @param threshold the minimum size in bytes of the messages to compress
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder compression(int threshold) {
+      if (threshold < 0) throw new IllegalArgumentException("The threshold must be >= 0");
+      this.framing = Framing.LENGTH;
+      this.compressionThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Set the framing that the client will negotiate with the server. If it is not {@link
+     * Framing#LINE} a {@link Handshake} is done when the client starts.
+     *
+     * @param framing the framing of the messages
+     * @return this same builder instance
+     */
+    @NonNull
+    public ClientBuilder framing(@NonNull Framing framing) {
+      this.framing = framing;
+      return this;
+    }
+
     /**
      * Starts the client.
      *
@@ -278,24 +762,118 @@ public class JsonClient extends Thread implements JsonMessenger {
      */
     @NonNull
     public JsonClient start() throws IOException {
+      return this.start(this.host, this.port);
+    }
+
+    @NonNull
+    private JsonClient start(@NonNull String host, int port) throws IOException {
       Socket socket = new Socket(host, port);
+      socket.setTcpNoDelay(true);
       JsonClient client =
           new JsonClient(
               socket,
-              new PrintWriter(
-                  new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true),
-              new BufferedReader(
-                  new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+              new FrameWriter(new BufferedOutputStream(socket.getOutputStream())),
+              new FrameReader(new BufferedInputStream(socket.getInputStream())),
               handler,
               gson.create(),
               this.receptors,
               timeout,
               false,
               0);
+      client.setExecutor(this.executor);
+      client.getOutput().setHighWaterMark(this.highWaterMark);
+      client.setMetrics(this.metrics);
+      client.setCoalescing(this.coalescing);
       client.start();
+      if (this.framing != Framing.LINE || !this.credentials.isEmpty()) {
+        client.setCompressionThreshold(this.compressionThreshold);
+        Handshake accepted;
+        try {
+          accepted =
+              client.handshake(
+                  new Handshake(this.framing, this.compressionThreshold >= 0), this.credentials);
+        } catch (MessengerListenFailException e) {
+          client.close();
+          throw new IOException(e);
+        }
+        // The server responded: null means it does not authenticate sessions
+        if (!accepted.getAuthenticated().orElse(true)) {
+          client.close();
+          throw new IOException("The server refused the credentials of the client");
+        }
+      }
       return client;
     }
 
+    /**
+     * Starts a pool of clients connected to the same server. Each connection is started as in
+     * {@link #start()}.
+     *
+     * @param connections the amount of connections of the pool
+     * @return the pool instance
+     * @throws IOException if any of the connections could not be started, in that case the ones
+     *     that were started are closed
+     */
+    @NonNull
+    public JsonClientPool pool(int connections) throws IOException {
+      if (connections < 1) throw new IllegalArgumentException("A pool requires a connection");
+      List<JsonClient> clients = new ArrayList<>(connections);
+      try {
+        for (int i = 0; i < connections; i++) {
+          clients.add(this.start());
+        }
+      } catch (IOException e) {
+        clients.forEach(JsonClient::close);
+        throw e;
+      }
+      return new JsonClientPool(clients);
+    }
+
+    /**
+     * Starts a client which connects again when its connection is lost. Each connection is started
+     * as in {@link #start()}.
+     *
+     * @param minBackoff the minimum millis to wait before connecting again
+     * @param maxBackoff the maximum millis to wait before connecting again
+     * @return the client instance
+     * @throws IOException if the first connection could not be started
+     */
+    @NonNull
+    public ReconnectingClient reconnecting(long minBackoff, long maxBackoff) throws IOException {
+      return new ReconnectingClient(this, this.start(), minBackoff, maxBackoff);
+    }
+
+    /**
+     * Starts a balancer of clients connected to replicas of the same server: the server of this
+     * builder and the other endpoints given. Each connection is started as in {@link #start()}.
+     *
+     * @param endpoints the other endpoints, written as {@code host:port}
+     * @return the balancer instance
+     * @throws IOException if any of the connections could not be started, in that case the ones
+     *     that were started are closed
+     */
+    @NonNull
+    public JsonClientBalancer balance(@NonNull String... endpoints) throws IOException {
+      List<JsonClient> clients = new ArrayList<>(endpoints.length + 1);
+      try {
+        clients.add(this.start());
+        for (String endpoint : endpoints) {
+          int separator = endpoint.lastIndexOf(':');
+          if (separator < 0) {
+            throw new IllegalArgumentException(endpoint + " is not written as host:port");
+          }
+          clients.add(
+              this.start(
+                  endpoint.substring(0, separator),
+                  Integer.parseInt(endpoint.substring(separator + 1))));
+        }
+      } catch (IOException | RuntimeException e) {
+        clients.forEach(JsonClient::close);
+        throw e;
+      }
+      return new JsonClientBalancer(clients);
+    }
+
     /**
      * Set the instance of {@link GsonBuilder}.
      *
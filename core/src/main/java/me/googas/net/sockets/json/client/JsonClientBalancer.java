@@ -0,0 +1,389 @@
+package me.googas.net.sockets.json.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.api.metrics.Histogram;
+import me.googas.net.sockets.json.server.JsonSocketServer;
+import me.googas.starbox.scheduler.TimingWheel;
+
+/**
+ * Balances requests across {@link JsonClient} connected to replicas of the same {@link
+ * JsonSocketServer}. Each request is sent to the available endpoint chosen by the {@link Strategy}.
+ * Endpoints that fail a few requests in a row, because they timed out or the connection was lost,
+ * are ejected for a while.
+ *
+ * <p>Requests may be hedged: if a request has no response after the delay in which most requests
+ * get theirs, a copy is sent to another endpoint and the first response is used. Hedged requests
+ * are executed twice so only {@link Request#isIdempotent()} requests are hedged. The delay is taken
+ * from the latency of the last window so it follows changes of the latency of the endpoints.
+ */
+public class JsonClientBalancer implements Messenger {
+
+  /** The endpoints of the balancer. */
+  @NonNull @Getter private final List<Endpoint> endpoints;
+
+  /** The latency of the requests of every endpoint in the current window. */
+  @NonNull private volatile Histogram latency = new Histogram();
+
+  /** The latency of the requests of every endpoint in the last complete window. */
+  @NonNull private volatile Histogram previous = new Histogram();
+
+  /** The {@link System#nanoTime()} when the current window started. */
+  private volatile long rotated = System.nanoTime();
+
+  /** The amount of requests that were hedged. */
+  @NonNull private final LongAdder hedged = new LongAdder();
+
+  /** The index of the endpoint to start looking from, so ties are spread. */
+  @NonNull private final AtomicInteger next = new AtomicInteger();
+
+  /** How the endpoint of each request is chosen. */
+  @NonNull @Getter @Setter private volatile Strategy strategy = Strategy.LEAST_OUTSTANDING;
+
+  /** The amount of requests in a row that an endpoint must fail to be ejected. */
+  @Getter @Setter private volatile int failures = 3;
+
+  /** The millis that an endpoint is ejected for. */
+  @Getter @Setter private volatile long ejection = 5000;
+
+  /**
+   * The percentile of latency after which requests are hedged, for instance 0.95. Requests are not
+   * hedged if this is not greater than 0.
+   */
+  @Getter @Setter private volatile double hedgePercentile;
+
+  /** The minimum millis to wait before hedging a request. */
+  @Getter @Setter private volatile long hedgeDelay = 10;
+
+  /** The millis of each window of latency from which the delay to hedge requests is taken. */
+  @Getter @Setter private volatile long window = 10000;
+
+  /**
+   * Create the balancer.
+   *
+   * @param clients the connections to each endpoint
+   */
+  protected JsonClientBalancer(@NonNull Collection<JsonClient> clients) {
+    if (clients.isEmpty()) throw new IllegalArgumentException("A balancer requires an endpoint");
+    List<Endpoint> endpoints = new ArrayList<>(clients.size());
+    clients.forEach(client -> endpoints.add(new Endpoint(client)));
+    this.endpoints = Collections.unmodifiableList(endpoints);
+  }
+
+  /**
+   * Hedge the idempotent requests that take longer than a percentile of the latency of previous
+   * requests.
+   *
+   * @param percentile the percentile between 0 and 1, for instance 0.95
+   * @param delay the minimum millis to wait before hedging a request
+   * @return this same balancer
+   */
+  @NonNull
+  public JsonClientBalancer hedge(double percentile, long delay) {
+    this.hedgePercentile = percentile;
+    this.hedgeDelay = delay;
+    return this;
+  }
+
+  /**
+   * Get the amount of requests that were sent to a second endpoint.
+   *
+   * @return the amount of requests hedged
+   */
+  public long getHedged() {
+    return this.hedged.sum();
+  }
+
+  /**
+   * Get the millis to wait before hedging a request. This is the latency at the hedge percentile in
+   * the last complete window or, until a window is complete, in the current one.
+   *
+   * @return the millis to wait
+   */
+  public long getHedgeWait() {
+    this.rotate(System.nanoTime());
+    long nanos = this.previous.getValueAt(this.hedgePercentile);
+    if (nanos == 0) nanos = this.latency.getValueAt(this.hedgePercentile);
+    return Math.max(this.hedgeDelay, TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  /**
+   * Starts a new window of latency if the current one is complete. If no window was started for a
+   * whole window the last one is empty, so old latency does not decide when to hedge.
+   *
+   * @param now the current {@link System#nanoTime()}
+   */
+  private void rotate(long now) {
+    long window = TimeUnit.MILLISECONDS.toNanos(this.window);
+    if (now - this.rotated < window) return;
+    synchronized (this) {
+      long elapsed = now - this.rotated;
+      if (elapsed < window) return;
+      this.previous = elapsed < 2 * window ? this.latency : new Histogram();
+      this.latency = new Histogram();
+      this.rotated = now;
+    }
+  }
+
+  /**
+   * Get the endpoint with the best score that is not ejected. If every endpoint is ejected the best
+   * open one is used.
+   *
+   * @param exclude the endpoint to skip or null to consider every endpoint
+   * @return the endpoint or empty if every endpoint is closed
+   */
+  @NonNull
+  public Optional<Endpoint> getEndpoint(Endpoint exclude) {
+    int size = this.endpoints.size();
+    int start = Math.floorMod(this.next.getAndIncrement(), size);
+    long now = System.currentTimeMillis();
+    Endpoint best = null;
+    boolean bestEjected = true;
+    double score = Double.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      Endpoint endpoint = this.endpoints.get((start + i) % size);
+      if (endpoint == exclude || endpoint.client.isClosed()) continue;
+      boolean ejected = endpoint.isEjected(now);
+      double current = endpoint.getScore(this.strategy);
+      if (best == null
+          || (bestEjected && !ejected)
+          || (bestEjected == ejected && current < score)) {
+        best = endpoint;
+        bestEjected = ejected;
+        score = current;
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  /**
+   * Get whether every endpoint is closed.
+   *
+   * @return true if every endpoint is closed
+   */
+  public boolean isClosed() {
+    return this.endpoints.stream().allMatch(endpoint -> endpoint.client.isClosed());
+  }
+
+  @Override
+  public void listen() throws MessengerListenFailException {
+    throw new MessengerListenFailException(
+        "The endpoints of a balancer listen in their own threads");
+  }
+
+  @Override
+  public void close() {
+    this.endpoints.forEach(
+        endpoint -> {
+          if (!endpoint.client.isClosed()) endpoint.client.close();
+        });
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+    this.sendRequestAsync(request)
+        .whenComplete(
+            (result, e) -> {
+              if (e == null) {
+                consumer.accept(result);
+              } else {
+                this.endpoints.get(0).client.getThrowableHandler().accept(e);
+              }
+            });
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+    Optional<Endpoint> optional = this.getEndpoint(null);
+    if (!optional.isPresent()) {
+      future.completeExceptionally(
+          new MessengerListenFailException("Every endpoint of the balancer is closed"));
+      return future;
+    }
+    Endpoint first = optional.get();
+    AtomicInteger attempts = new AtomicInteger(1);
+    this.attempt(first, request, future, attempts);
+    if (request.isIdempotent() && this.hedgePercentile > 0 && this.endpoints.size() > 1) {
+      TimingWheel.Timeout hedge =
+          first
+              .client
+              .getTimingWheel()
+              .schedule(
+                  this.getHedgeWait(),
+                  () -> {
+                    if (future.isDone()) return;
+                    try {
+                      first
+                          .client
+                          .getExecutor()
+                          .execute(() -> this.hedge(first, request, future, attempts));
+                    } catch (RejectedExecutionException e) {
+                      // The client is closing, the first attempt still completes the request
+                    }
+                  });
+      future.whenComplete((result, e) -> hedge.cancel());
+    }
+    return future;
+  }
+
+  @Override
+  public <T> @NonNull Optional<T> sendRequest(@NonNull StarboxRequest<T> request)
+      throws MessengerListenFailException {
+    long timeout = this.endpoints.get(0).client.getTimeout();
+    try {
+      return this.sendRequestAsync(request).get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new MessengerListenFailException(
+          "The request " + request + " has timed out after " + timeout + "ms");
+    } catch (ExecutionException e) {
+      throw new MessengerListenFailException(null, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessengerListenFailException("Interrupted while waiting for " + request, e);
+    }
+  }
+
+  private <T> void attempt(
+      @NonNull Endpoint endpoint,
+      @NonNull StarboxRequest<T> request,
+      @NonNull CompletableFuture<Optional<T>> future,
+      @NonNull AtomicInteger attempts) {
+    long start = System.nanoTime();
+    endpoint.outstanding.incrementAndGet();
+    endpoint.client.sendRequest(
+        request,
+        result -> {
+          this.answered(endpoint, start);
+          future.complete(result);
+        },
+        e -> {
+          if (e instanceof MessengerListenFailException) {
+            endpoint.outstanding.decrementAndGet();
+            endpoint.failed(this.failures, this.ejection);
+            // Wait for the other attempt if the request was hedged
+            if (attempts.decrementAndGet() > 0) return;
+          } else {
+            this.answered(endpoint, start);
+          }
+          future.completeExceptionally(e);
+        });
+  }
+
+  private <T> void hedge(
+      @NonNull Endpoint first,
+      @NonNull StarboxRequest<T> request,
+      @NonNull CompletableFuture<Optional<T>> future,
+      @NonNull AtomicInteger attempts) {
+    if (future.isDone()) return;
+    this.getEndpoint(first)
+        .ifPresent(
+            second -> {
+              attempts.incrementAndGet();
+              this.hedged.increment();
+              this.attempt(second, request, future, attempts);
+            });
+  }
+
+  private void answered(@NonNull Endpoint endpoint, long start) {
+    long nanos = System.nanoTime() - start;
+    endpoint.outstanding.decrementAndGet();
+    endpoint.succeeded(nanos);
+    this.rotate(start + nanos);
+    this.latency.record(nanos);
+  }
+
+  /** How the endpoint of a request is chosen. */
+  public enum Strategy {
+    /** The endpoint with the least requests waiting for a response. */
+    LEAST_OUTSTANDING,
+    /**
+     * The endpoint with the lowest moving average of latency, weighted by the requests waiting for
+     * a response so a slow endpoint is not flooded before its average catches up.
+     */
+    EWMA
+  }
+
+  /** An endpoint of the balancer. */
+  public static class Endpoint {
+
+    /** The weight of the latest latency in the moving average. */
+    private static final double ALPHA = 0.2;
+
+    /** The connection to the endpoint. */
+    @NonNull @Getter private final JsonClient client;
+
+    /** The requests waiting for a response. */
+    @NonNull private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** The requests failed in a row. */
+    @NonNull private final AtomicInteger failed = new AtomicInteger();
+
+    /** The moving average of latency in nanos. */
+    @Getter private volatile double average;
+
+    /** The millis until which the endpoint is ejected. */
+    private volatile long ejected;
+
+    private Endpoint(@NonNull JsonClient client) {
+      this.client = client;
+    }
+
+    /**
+     * Get the amount of requests waiting for a response.
+     *
+     * @return the amount of requests
+     */
+    public int getOutstanding() {
+      return this.outstanding.get();
+    }
+
+    /**
+     * Get whether the endpoint is ejected.
+     *
+     * @param now the current millis
+     * @return true if the endpoint is ejected
+     */
+    public boolean isEjected(long now) {
+      return now < this.ejected;
+    }
+
+    private double getScore(@NonNull Strategy strategy) {
+      int outstanding = this.outstanding.get();
+      return strategy == Strategy.EWMA ? this.average * (outstanding + 1) : outstanding;
+    }
+
+    private void succeeded(long nanos) {
+      this.failed.set(0);
+      double average = this.average;
+      this.average = average == 0 ? nanos : average + Endpoint.ALPHA * (nanos - average);
+    }
+
+    private void failed(int failures, long ejection) {
+      if (this.failed.incrementAndGet() >= failures) {
+        this.failed.set(0);
+        this.ejected = System.currentTimeMillis() + ejection;
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package me.googas.net.sockets.json.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.sockets.json.server.JsonSocketServer;
+
+/**
+ * A small pool of {@link JsonClient} connected to the same {@link JsonSocketServer}. Requests are
+ * pipelined in the connection with the least requests waiting for a response, so many threads may
+ * share the pool without opening a connection each.
+ *
+ * <p>Requests sent by the server are received by each connection using the receptors given to the
+ * {@link JsonClient.ClientBuilder}.
+ */
+public class JsonClientPool implements Messenger {
+
+  /** The connections of the pool. */
+  @NonNull @Getter private final List<JsonClient> clients;
+
+  /** The index of the connection to start looking from, so ties are spread. */
+  @NonNull private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Create the pool.
+   *
+   * @param clients the connections of the pool
+   */
+  protected JsonClientPool(@NonNull Collection<JsonClient> clients) {
+    if (clients.isEmpty()) throw new IllegalArgumentException("A pool requires a connection");
+    this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+  }
+
+  /**
+   * Get the open connection with the least requests waiting for a response.
+   *
+   * @return the connection or empty if every connection is closed
+   */
+  @NonNull
+  public Optional<JsonClient> getClient() {
+    int size = this.clients.size();
+    int start = Math.floorMod(this.next.getAndIncrement(), size);
+    JsonClient best = null;
+    int outstanding = Integer.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      JsonClient client = this.clients.get((start + i) % size);
+      if (client.isClosed()) continue;
+      int requests = client.getRequests().size();
+      if (requests < outstanding) {
+        best = client;
+        outstanding = requests;
+        if (requests == 0) break;
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  @NonNull
+  private JsonClient client() throws MessengerListenFailException {
+    return this.getClient()
+        .orElseThrow(
+            () -> new MessengerListenFailException("Every connection of the pool is closed"));
+  }
+
+  /**
+   * Get whether every connection of the pool is closed.
+   *
+   * @return true if every connection is closed
+   */
+  public boolean isClosed() {
+    return this.clients.stream().allMatch(JsonClient::isClosed);
+  }
+
+  @Override
+  public void listen() throws MessengerListenFailException {
+    throw new MessengerListenFailException("The connections of a pool listen in their own threads");
+  }
+
+  @Override
+  public void close() {
+    this.clients.forEach(
+        client -> {
+          if (!client.isClosed()) client.close();
+        });
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+    try {
+      this.client().sendRequest(request, consumer);
+    } catch (MessengerListenFailException e) {
+      this.clients.get(0).getThrowableHandler().accept(e);
+    }
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    try {
+      return this.client().sendRequestAsync(request);
+    } catch (MessengerListenFailException e) {
+      CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
+
+  @Override
+  public <T> @NonNull Optional<T> sendRequest(@NonNull StarboxRequest<T> request)
+      throws MessengerListenFailException {
+    return this.client().sendRequest(request);
+  }
+}
@@ -0,0 +1,251 @@
+package me.googas.net.sockets.json.client;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.starbox.scheduler.TimingWheel;
+
+/**
+ * A client which connects again when its connection is lost. Connecting is tried again with an
+ * exponential backoff, with some jitter so many clients do not reconnect at once.
+ *
+ * <p>Requests that were waiting for a response when the connection was lost, and requests sent
+ * while it is reconnecting, are sent again once it reconnects if they are {@link
+ * Request#isIdempotent()}. Other requests fail right away as the server may have run them. Every
+ * request still fails once the timeout of the client passes.
+ */
+public class ReconnectingClient implements Messenger {
+
+  /** The builder that starts each connection. */
+  @NonNull private final JsonClient.ClientBuilder builder;
+
+  /** The minimum millis to wait before connecting again. */
+  @Getter private final long minBackoff;
+
+  /** The maximum millis to wait before connecting again. */
+  @Getter private final long maxBackoff;
+
+  /** The requests waiting for a connection to be sent. */
+  @NonNull private final Queue<Replay<?>> pending = new ConcurrentLinkedQueue<>();
+
+  /** Whether a thread is connecting again. */
+  @NonNull private final AtomicBoolean reconnecting = new AtomicBoolean();
+
+  /** The amount of times that the client has connected again. */
+  @NonNull private final LongAdder reconnects = new LongAdder();
+
+  /** The amount of requests sent again. */
+  @NonNull private final LongAdder replayed = new LongAdder();
+
+  /** The current connection, it may be closed while reconnecting. */
+  @NonNull @Getter private volatile JsonClient client;
+
+  /** Whether the client was closed. */
+  @Getter private volatile boolean closed;
+
+  /**
+   * Create the client.
+   *
+   * @param builder the builder that starts each connection
+   * @param client the first connection
+   * @param minBackoff the minimum millis to wait before connecting again
+   * @param maxBackoff the maximum millis to wait before connecting again
+   */
+  protected ReconnectingClient(
+      @NonNull JsonClient.ClientBuilder builder,
+      @NonNull JsonClient client,
+      long minBackoff,
+      long maxBackoff) {
+    if (minBackoff <= 0 || maxBackoff < minBackoff) {
+      throw new IllegalArgumentException("The backoff must be positive and min <= max");
+    }
+    this.builder = builder;
+    this.client = client;
+    this.minBackoff = minBackoff;
+    this.maxBackoff = maxBackoff;
+    client.onClose(this::reconnect);
+  }
+
+  /**
+   * Get the amount of times that the client has connected again.
+   *
+   * @return the amount of reconnects
+   */
+  public long getReconnects() {
+    return this.reconnects.sum();
+  }
+
+  /**
+   * Get the amount of requests that were sent again after the connection was lost.
+   *
+   * @return the amount of requests replayed
+   */
+  public long getReplayed() {
+    return this.replayed.sum();
+  }
+
+  @Override
+  public void listen() throws MessengerListenFailException {
+    throw new MessengerListenFailException("The connections of the client listen in their threads");
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    if (!this.client.isClosed()) this.client.close();
+    Replay<?> replay;
+    while ((replay = this.pending.poll()) != null) {
+      replay.future.completeExceptionally(
+          new MessengerListenFailException(
+              "The client was closed before " + replay.request + " was responded"));
+    }
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+    this.sendRequestAsync(request)
+        .whenComplete(
+            (result, e) -> {
+              if (e == null) {
+                consumer.accept(result);
+              } else {
+                this.client.getThrowableHandler().accept(e);
+              }
+            });
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    Replay<T> replay = new Replay<>(request);
+    long timeout = this.client.getTimeout();
+    TimingWheel.Timeout expiry =
+        this.client
+            .getTimingWheel()
+            .schedule(
+                timeout,
+                () ->
+                    replay.future.completeExceptionally(
+                        new MessengerListenFailException(
+                            "The request " + request + " has timed out after " + timeout + "ms")));
+    replay.future.whenComplete((result, e) -> expiry.cancel());
+    this.send(replay);
+    return replay.future;
+  }
+
+  @Override
+  public <T> @NonNull Optional<T> sendRequest(@NonNull StarboxRequest<T> request)
+      throws MessengerListenFailException {
+    try {
+      return this.sendRequestAsync(request).get();
+    } catch (ExecutionException e) {
+      throw new MessengerListenFailException(null, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessengerListenFailException("Interrupted while waiting for " + request, e);
+    }
+  }
+
+  private <T> void send(@NonNull Replay<T> replay) {
+    if (replay.future.isDone()) return;
+    JsonClient client = this.client;
+    if (client.isClosed()) {
+      this.park(replay);
+      return;
+    }
+    client.sendRequest(
+        replay.request,
+        replay.future::complete,
+        e -> {
+          if (client.isClosed() && !this.closed) {
+            this.park(replay);
+          } else {
+            replay.future.completeExceptionally(e);
+          }
+        });
+  }
+
+  /**
+   * Keeps a request to be sent once the client connects again or fails it if it is not idempotent.
+   *
+   * @param replay the request
+   */
+  private void park(@NonNull Replay<?> replay) {
+    if (this.closed || !replay.request.isIdempotent()) {
+      replay.future.completeExceptionally(
+          new MessengerListenFailException(
+              "The connection was lost before " + replay.request + " was responded"));
+      return;
+    }
+    this.pending.add(replay);
+    this.reconnect();
+    // The connection may have been started before the request was added
+    if (!this.client.isClosed()) this.flush();
+  }
+
+  private void flush() {
+    Replay<?> replay;
+    while ((replay = this.pending.poll()) != null) {
+      this.replayed.increment();
+      this.send(replay);
+    }
+  }
+
+  private void reconnect() {
+    if (this.closed || !this.reconnecting.compareAndSet(false, true)) return;
+    Thread thread = new Thread(this::connect, "starbox-reconnect");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void connect() {
+    long backoff = this.minBackoff;
+    while (!this.closed) {
+      try {
+        JsonClient client = this.builder.start();
+        this.client = client;
+        this.reconnects.increment();
+        this.reconnecting.set(false);
+        client.onClose(this::reconnect);
+        if (this.closed) client.close();
+        this.flush();
+        return;
+      } catch (IOException e) {
+        this.client.getThrowableHandler().accept(e);
+      }
+      try {
+        Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      backoff = Math.min(this.maxBackoff, backoff * 2);
+    }
+    this.reconnecting.set(false);
+  }
+
+  /** A request and the future completed with its response. */
+  private static class Replay<T> {
+
+    @NonNull private final StarboxRequest<T> request;
+    @NonNull private final CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+
+    private Replay(@NonNull StarboxRequest<T> request) {
+      this.request = request;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package me.googas.net.sockets.json.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A pool of direct {@link ByteBuffer}. Buffers are pooled in classes of powers of two from 1 KiB to
+ * {@link #MAX_POOLED}, bigger buffers are allocated on the heap and never pooled.
+ *
+ * <p>Direct buffers are written to and read from channels without being copied to a temporary
+ * buffer, pooling them avoids allocating and zeroing them again for each message.
+ */
+public class BufferPool {
+
+  /** The capacity of the smallest buffers. */
+  public static final int MIN_POOLED = 1024;
+
+  /** The capacity of the biggest buffers that are pooled. */
+  public static final int MAX_POOLED = 64 * 1024;
+
+  /** The amount of classes of buffers. */
+  private static final int CLASSES =
+      Integer.numberOfTrailingZeros(BufferPool.MAX_POOLED)
+          - Integer.numberOfTrailingZeros(BufferPool.MIN_POOLED)
+          + 1;
+
+  /** The free buffers of each class. */
+  @NonNull private final Queue<ByteBuffer>[] free;
+
+  /** The amount of free buffers of each class. */
+  @NonNull private final AtomicInteger[] sizes;
+
+  /** The maximum amount of free buffers kept in each class. */
+  @Getter private final int capacity;
+
+  /** The amount of buffers allocated because there were no free ones. */
+  @NonNull private final LongAdder allocated = new LongAdder();
+
+  /** The amount of buffers that were reused. */
+  @NonNull private final LongAdder reused = new LongAdder();
+
+  /**
+   * Create the pool.
+   *
+   * @param capacity the maximum amount of free buffers kept in each class
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public BufferPool(int capacity) {
+    this.capacity = capacity;
+    this.free = new Queue[BufferPool.CLASSES];
+    this.sizes = new AtomicInteger[BufferPool.CLASSES];
+    for (int i = 0; i < BufferPool.CLASSES; i++) {
+      this.free[i] = new ConcurrentLinkedQueue<>();
+      this.sizes[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Get the pool shared by the messengers. It keeps up to 256 free buffers of each class.
+   *
+   * @return the shared pool
+   */
+  @NonNull
+  public static BufferPool getShared() {
+    return Shared.POOL;
+  }
+
+  /**
+   * Get a buffer with at least the given capacity. The buffer is cleared and its limit is its
+   * capacity.
+   *
+   * @param capacity the minimum capacity of the buffer
+   * @return the buffer
+   */
+  @NonNull
+  public ByteBuffer acquire(int capacity) {
+    if (capacity > BufferPool.MAX_POOLED) return ByteBuffer.allocate(capacity);
+    int index = BufferPool.index(capacity);
+    ByteBuffer buffer = this.free[index].poll();
+    if (buffer == null) {
+      this.allocated.increment();
+      return ByteBuffer.allocateDirect(BufferPool.MIN_POOLED << index);
+    }
+    this.sizes[index].decrementAndGet();
+    this.reused.increment();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Gives a buffer back to the pool. Only direct buffers with the capacity of a class are kept, the
+   * buffer must not be used after it is released.
+   *
+   * @param buffer the buffer to release
+   */
+  public void release(@NonNull ByteBuffer buffer) {
+    int capacity = buffer.capacity();
+    if (!buffer.isDirect()
+        || buffer.isReadOnly()
+        || capacity < BufferPool.MIN_POOLED
+        || capacity > BufferPool.MAX_POOLED
+        || Integer.bitCount(capacity) != 1) {
+      return;
+    }
+    int index = BufferPool.index(capacity);
+    if (this.sizes[index].incrementAndGet() > this.capacity) {
+      this.sizes[index].decrementAndGet();
+      return;
+    }
+    this.free[index].add(buffer);
+  }
+
+  /**
+   * Get the amount of buffers allocated because there were no free ones.
+   *
+   * @return the amount of buffers allocated
+   */
+  public long getAllocated() {
+    return this.allocated.sum();
+  }
+
+  /**
+   * Get the amount of buffers that were reused.
+   *
+   * @return the amount of buffers reused
+   */
+  public long getReused() {
+    return this.reused.sum();
+  }
+
+  private static int index(int capacity) {
+    if (capacity <= BufferPool.MIN_POOLED) return 0;
+    return 32
+        - Integer.numberOfLeadingZeros(capacity - 1)
+        - Integer.numberOfTrailingZeros(BufferPool.MIN_POOLED);
+  }
+
+  /** Holds the shared pool so it is only created if used. */
+  private static class Shared {
+
+    @NonNull private static final BufferPool POOL = new BufferPool(256);
+  }
+}
@@ -0,0 +1,101 @@
+package me.googas.net.sockets.json.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A message encoded once to be written by many {@link FrameWriter}. The bytes of the message are
+ * encoded for each {@link Framing} the first time a writer needs them and then shared, writers only
+ * queue views of the same buffers.
+ */
+public class Frame {
+
+  /** The message of the frame. */
+  @NonNull @Getter private final String message;
+
+  /** The message encoded in UTF-8. */
+  @NonNull private final byte[] bytes;
+
+  /** The buffers of the frame in {@link Framing#LINE}. */
+  private volatile ByteBuffer[] line;
+
+  /** The buffers of the frame in {@link Framing#LENGTH}. */
+  private volatile ByteBuffer[] length;
+
+  /** The buffers of the compressed frame in {@link Framing#LENGTH}. */
+  private volatile ByteBuffer[] compressed;
+
+  /**
+   * Create the frame.
+   *
+   * @param message the message of the frame
+   */
+  public Frame(@NonNull String message) {
+    this.message = message;
+    this.bytes = message.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get the buffers of the frame for a writer. The buffers are shared so writers must queue
+   * duplicates of them.
+   *
+   * @param framing the framing of the writer
+   * @param threshold the compression threshold of the writer
+   * @return the buffers of the frame
+   */
+  @NonNull
+  ByteBuffer[] encode(@NonNull Framing framing, int threshold) {
+    if (framing == Framing.LINE) {
+      ByteBuffer[] line = this.line;
+      if (line == null) {
+        line =
+            new ByteBuffer[] {ByteBuffer.wrap(this.bytes), ByteBuffer.wrap(FrameWriter.SEPARATOR)};
+        this.line = line;
+      }
+      return line;
+    } else if (threshold >= 0 && this.bytes.length >= threshold) {
+      ByteBuffer[] compressed = this.compressed;
+      if (compressed == null) {
+        byte[] deflated = Frame.deflate(this.bytes);
+        compressed = Frame.length(deflated, deflated.length | FrameDecoder.COMPRESSED);
+        this.compressed = compressed;
+      }
+      return compressed;
+    }
+    ByteBuffer[] length = this.length;
+    if (length == null) {
+      length = Frame.length(this.bytes, this.bytes.length);
+      this.length = length;
+    }
+    return length;
+  }
+
+  @NonNull
+  private static ByteBuffer[] length(@NonNull byte[] payload, int header) {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    buffer.putInt(0, header);
+    return new ByteBuffer[] {buffer, ByteBuffer.wrap(payload)};
+  }
+
+  @NonNull
+  private static byte[] deflate(@NonNull byte[] bytes) {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      byte[] buffer = new byte[Math.max(64, bytes.length / 2)];
+      int size = 0;
+      while (!deflater.finished()) {
+        if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+        size += deflater.deflate(buffer, size, buffer.length - size);
+      }
+      return Arrays.copyOf(buffer, size);
+    } finally {
+      deflater.end();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package me.googas.net.sockets.json.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import me.googas.net.api.metrics.Metrics;
+
+/**
+ * Decodes the messages from the bytes given by a stream. The bytes of incomplete messages are kept
+ * in a reusable array until the rest of the message is given.
+ *
+ * <p>The decoder returns a single message each time so the {@link Framing} may be changed between
+ * messages.
+ */
+public class FrameDecoder {
+
+  /** The maximum length of a message in bytes. */
+  public static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+  /**
+   * The bit of the header of a {@link Framing#LENGTH} frame which is set if its message is
+   * compressed using DEFLATE.
+   */
+  public static final int COMPRESSED = 0x80000000;
+
+  /** The framing used to decode the messages. */
+  @NonNull @Getter @Setter private volatile Framing framing = Framing.LINE;
+
+  /** The metrics in which the bytes decoded are recorded. */
+  @NonNull @Getter @Setter private volatile Metrics metrics = Metrics.DISABLED;
+
+  /** The bytes of the message being decoded. */
+  @NonNull private byte[] frame = new byte[1024];
+
+  /** The header of the message in {@link Framing#LENGTH}. */
+  @NonNull private final byte[] header = new byte[4];
+
+  /** The amount of bytes of the message being decoded. */
+  private int size;
+
+  /** The index in which the current line starts in {@link Framing#LINE}. */
+  private int line;
+
+  /** The amount of bytes of the header which have been read. */
+  private int headerSize;
+
+  /** The length of the message in {@link Framing#LENGTH} or -1 if the header is incomplete. */
+  private int length = -1;
+
+  /** Whether the message being decoded is compressed. */
+  private boolean compressed;
+
+  /** The inflater to decompress messages. */
+  private Inflater inflater;
+
+  /** Whether the decoder has been closed. */
+  private boolean closed;
+
+  /** The buffer where messages are decompressed. */
+  @NonNull private byte[] inflated = new byte[0];
+
+  /**
+   * Decode the next message from the buffer. The bytes of the buffer are consumed until a message
+   * is completed, if there's no complete message every byte is consumed and kept.
+   *
+   * @param buffer the buffer to read the bytes from
+   * @return the message if one was completed, null otherwise
+   * @throws IOException if the length of a message is not valid
+   */
+  public String decode(@NonNull ByteBuffer buffer) throws IOException {
+    int position = buffer.position();
+    try {
+      return this.framing == Framing.LINE ? this.decodeLine(buffer) : this.decodeLength(buffer);
+    } finally {
+      this.metrics.read(buffer.position() - position);
+    }
+  }
+
+  private String decodeLine(@NonNull ByteBuffer buffer) {
+    while (buffer.hasRemaining()) {
+      byte b = buffer.get();
+      if (b != '\n') {
+        this.append(b);
+        continue;
+      }
+      int end = this.size;
+      if (end > this.line && this.frame[end - 1] == '\r') end--;
+      if (end - this.line == 3
+          && this.frame[this.line] == '-'
+          && this.frame[this.line + 1] == '-'
+          && this.frame[this.line + 2] == '-') {
+        int length = this.line;
+        while (length > 0 && (this.frame[length - 1] == '\n' || this.frame[length - 1] == '\r')) {
+          length--;
+        }
+        this.reset();
+        if (length > 0) return new String(this.frame, 0, length, StandardCharsets.UTF_8);
+      } else {
+        this.append(b);
+        this.line = this.size;
+      }
+    }
+    return null;
+  }
+
+  private String decodeLength(@NonNull ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (this.length < 0) {
+        while (this.headerSize < 4 && buffer.hasRemaining()) {
+          this.header[this.headerSize++] = buffer.get();
+        }
+        if (this.headerSize < 4) return null;
+        int length =
+            (this.header[0] & 0xff) << 24
+                | (this.header[1] & 0xff) << 16
+                | (this.header[2] & 0xff) << 8
+                | (this.header[3] & 0xff);
+        this.compressed = (length & FrameDecoder.COMPRESSED) != 0;
+        length &= ~FrameDecoder.COMPRESSED;
+        if (length > FrameDecoder.MAX_LENGTH) {
+          throw new IOException("Invalid message length: " + length);
+        }
+        this.length = length;
+        this.ensure(length);
+      }
+      int read = Math.min(buffer.remaining(), this.length - this.size);
+      buffer.get(this.frame, this.size, read);
+      this.size += read;
+      if (this.size == this.length) {
+        int length = this.length;
+        boolean compressed = this.compressed;
+        this.reset();
+        if (compressed) return this.inflate(length);
+        if (length > 0) return new String(this.frame, 0, length, StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  private synchronized String inflate(int length) throws IOException {
+    if (this.closed) throw new IOException("The decoder is closed");
+    if (this.inflater == null) this.inflater = new Inflater();
+    this.inflater.reset();
+    this.inflater.setInput(this.frame, 0, length);
+    if (this.inflated.length < 64) this.inflated = new byte[Math.max(64, length * 4)];
+    int size = 0;
+    try {
+      while (!this.inflater.finished()) {
+        if (size == this.inflated.length) {
+          if (size >= FrameDecoder.MAX_LENGTH) {
+            throw new IOException("Compressed message is larger than " + FrameDecoder.MAX_LENGTH);
+          }
+          this.inflated = Arrays.copyOf(this.inflated, Math.min(size * 2, FrameDecoder.MAX_LENGTH));
+        }
+        int read = this.inflater.inflate(this.inflated, size, this.inflated.length - size);
+        if (read == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+          throw new IOException("Compressed message is truncated");
+        }
+        size += read;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Compressed message is invalid", e);
+    }
+    return size == 0 ? null : new String(this.inflated, 0, size, StandardCharsets.UTF_8);
+  }
+
+  /** Releases the resources used to decompress messages. */
+  public synchronized void close() {
+    this.closed = true;
+    if (this.inflater != null) this.inflater.end();
+    this.inflater = null;
+  }
+
+  private void append(byte b) {
+    this.ensure(this.size + 1);
+    this.frame[this.size++] = b;
+  }
+
+  private void ensure(int capacity) {
+    if (capacity > this.frame.length) {
+      this.frame = Arrays.copyOf(this.frame, Math.max(capacity, this.frame.length * 2));
+    }
+  }
+
+  private void reset() {
+    this.size = 0;
+    this.line = 0;
+    this.headerSize = 0;
+    this.length = -1;
+    this.compressed = false;
+  }
+}
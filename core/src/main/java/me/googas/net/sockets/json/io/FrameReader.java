@@ -0,0 +1,88 @@
+package me.googas.net.sockets.json.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Reads framed messages from an {@link InputStream}. Unlike a {@link java.io.Reader} the bytes
+ * which have been read but not yet decoded are kept by the {@link FrameDecoder}, so the {@link
+ * Framing} can be changed between messages without losing data.
+ */
+public class FrameReader implements Closeable {
+
+  /** The stream to read the bytes from. Null if subclasses give the bytes to the decoder. */
+  private final InputStream input;
+
+  /** The decoder of the messages. */
+  @NonNull @Getter private final FrameDecoder decoder = new FrameDecoder();
+
+  /**
+   * The buffer to read the bytes from the stream. Null if subclasses give the bytes to the decoder.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Create the reader.
+   *
+   * @param input the stream to read the bytes from
+   */
+  public FrameReader(@NonNull InputStream input) {
+    this.input = input;
+    this.buffer = ByteBuffer.allocate(8192);
+    this.buffer.limit(0);
+  }
+
+  /** Create a reader which bytes are given to the {@link #getDecoder()} by the subclass. */
+  protected FrameReader() {
+    this.input = null;
+    this.buffer = null;
+  }
+
+  /**
+   * Reads the next message. This blocks until a message is complete.
+   *
+   * @return the message or null if the end of the stream has been reached
+   * @throws IOException if the stream could not be read or the message could not be decoded, or if
+   *     the reader has no stream
+   */
+  public String read() throws IOException {
+    if (this.input == null) throw new IOException("This reader has no stream to read from");
+    while (true) {
+      String message = this.decoder.decode(this.buffer);
+      if (message != null) return message;
+      int read = this.input.read(this.buffer.array(), 0, this.buffer.capacity());
+      if (read == -1) return null;
+      this.buffer.position(0).limit(read);
+    }
+  }
+
+  /**
+   * Get the framing used to read messages.
+   *
+   * @return the framing
+   */
+  @NonNull
+  public Framing getFraming() {
+    return this.decoder.getFraming();
+  }
+
+  /**
+   * Set the framing used to read messages. This must be called from the thread reading messages,
+   * between two messages.
+   *
+   * @param framing the new framing
+   */
+  public void setFraming(@NonNull Framing framing) {
+    this.decoder.setFraming(framing);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.decoder.close();
+    if (this.input != null) this.input.close();
+  }
+}
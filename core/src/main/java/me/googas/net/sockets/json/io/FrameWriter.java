@@ -0,0 +1,471 @@
+package me.googas.net.sockets.json.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import me.googas.net.api.metrics.Metrics;
+
+/**
+ * Writes framed messages. Messages are not written by the thread that produced them: their frames
+ * are added to a queue which is drained by a single writer at a time, every frame in the queue is
+ * written in the same batch and the output is flushed once per drain.
+ *
+ * <p>By default the thread that queues a frame drains the queue into the {@link OutputStream} if no
+ * other thread is already doing it. Subclasses may drain the queue somewhere else by overriding
+ * {@link #schedule()}.
+ *
+ * <p>If the peer reads slower than messages are written the queue grows, once it holds more bytes
+ * than the high-water mark the threads writing messages wait until it is drained below it.
+ *
+ * <p>The frame of a message is queued while holding the lock of the writer. To write a message and
+ * change the {@link Framing} before any other message is written synchronize on the writer.
+ */
+public class FrameWriter implements Closeable {
+
+  /** The bytes which end a message in {@link Framing#LINE}. */
+  @NonNull static final byte[] SEPARATOR = "\n---\n".getBytes(StandardCharsets.UTF_8);
+
+  /** The stream to write the bytes to. Null if subclasses drain the queue. */
+  private final OutputStream output;
+
+  /** The buffers of the frames waiting to be written. */
+  @NonNull private final Queue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+
+  /** The amount of bytes waiting to be written. */
+  @NonNull private final AtomicLong queued = new AtomicLong();
+
+  /** Whether a thread is draining the queue. */
+  @NonNull private final AtomicBoolean draining = new AtomicBoolean();
+
+  /** The lock in which threads wait for the queue to be drained. */
+  @NonNull private final Object drained = new Object();
+
+  /** The framing used to write messages. */
+  @NonNull @Getter @Setter private volatile Framing framing = Framing.LINE;
+
+  /**
+   * The minimum size in bytes of the messages that are compressed using DEFLATE. Compression is
+   * only used with {@link Framing#LENGTH} and must have been negotiated with the peer. By default
+   * this is -1 so messages are never compressed.
+   */
+  @Getter @Setter private volatile int compressionThreshold = -1;
+
+  /** The deflater to compress messages, reused while holding the lock of the writer. */
+  private Deflater deflater;
+
+  /** The buffer where messages are compressed, reused while holding the lock of the writer. */
+  @NonNull private byte[] compressed = new byte[0];
+
+  /**
+   * The maximum amount of bytes that may be waiting to be written before threads writing messages
+   * have to wait. By default this is {@link Long#MAX_VALUE} so writers never wait.
+   */
+  @Getter @Setter private volatile long highWaterMark = Long.MAX_VALUE;
+
+  /**
+   * The pool of the buffers in which messages are encoded or null to encode them in arrays. Pooled
+   * buffers are direct so they suit writers drained into channels.
+   */
+  @Getter @Setter private volatile BufferPool pool;
+
+  /** The array to copy direct buffers to the stream, only used by the thread draining the queue. */
+  private byte[] scratch;
+
+  /** The metrics in which the bytes of the frames written are recorded. */
+  @NonNull @Getter @Setter private volatile Metrics metrics = Metrics.DISABLED;
+
+  /** The exception that stopped the writer if any. */
+  private volatile IOException failure;
+
+  /** Whether the writer is closed. */
+  @Getter private volatile boolean closed;
+
+  /**
+   * Create the writer.
+   *
+   * @param output the stream to write the bytes to
+   */
+  public FrameWriter(@NonNull OutputStream output) {
+    this.output = output;
+  }
+
+  /** Create a writer which queue is drained by the subclass. */
+  protected FrameWriter() {
+    this.output = null;
+  }
+
+  /**
+   * Queues a message and makes sure that it is drained. This may block if the queue is above the
+   * high-water mark.
+   *
+   * @param message the message to write
+   * @throws IOException if the writer is closed or the queue could not be drained
+   */
+  public void write(@NonNull String message) throws IOException {
+    BufferPool pool = this.pool;
+    ByteBuffer payload =
+        pool == null
+            ? ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8))
+            : FrameWriter.encode(message, pool);
+    int length = payload.remaining();
+    long bytes;
+    long size;
+    synchronized (this) {
+      try {
+        this.check();
+      } catch (IOException e) {
+        this.recycle(payload);
+        throw e;
+      }
+      if (this.framing == Framing.LENGTH) {
+        int threshold = this.compressionThreshold;
+        if (threshold >= 0 && length >= threshold) {
+          byte[] array;
+          if (pool == null) {
+            array = payload.array();
+          } else if (payload.hasArray()) {
+            // Big messages are encoded into heap buffers which also hold the header and separator
+            int start = payload.arrayOffset() + payload.position();
+            array = Arrays.copyOfRange(payload.array(), start, start + length);
+          } else {
+            array = new byte[length];
+            payload.get(array);
+          }
+          this.recycle(payload);
+          payload = this.compress(array);
+          ByteBuffer header = ByteBuffer.allocate(4);
+          header.putInt(0, payload.remaining() | FrameDecoder.COMPRESSED);
+          this.frames.add(header);
+          this.frames.add(payload);
+          bytes = payload.remaining() + 4L;
+        } else if (pool != null) {
+          // Encoded payloads leave room for the header before them
+          payload.putInt(0, length);
+          payload.position(0);
+          this.frames.add(payload);
+          bytes = length + 4L;
+        } else {
+          ByteBuffer header = ByteBuffer.allocate(4);
+          header.putInt(0, length);
+          this.frames.add(header);
+          this.frames.add(payload);
+          bytes = length + 4L;
+        }
+      } else {
+        if (pool != null) {
+          // And room for the separator after them
+          int end = payload.limit();
+          payload.limit(end + FrameWriter.SEPARATOR.length);
+          for (int i = 0; i < FrameWriter.SEPARATOR.length; i++) {
+            payload.put(end + i, FrameWriter.SEPARATOR[i]);
+          }
+          this.frames.add(payload);
+        } else {
+          this.frames.add(payload);
+          this.frames.add(ByteBuffer.wrap(FrameWriter.SEPARATOR));
+        }
+        bytes = length + (long) FrameWriter.SEPARATOR.length;
+      }
+      size = this.queued.addAndGet(bytes);
+    }
+    this.metrics.written(bytes);
+    this.schedule();
+    if (size > this.highWaterMark && this.canWait()) this.await();
+  }
+
+  /**
+   * Encodes a message as UTF-8 into a buffer of the pool without creating an array of its bytes.
+   * The buffer has room for the header of {@link Framing#LENGTH} before the message and for the
+   * separator of {@link Framing#LINE} after it, its position is the start of the message and its
+   * limit the end of it.
+   *
+   * @param message the message to encode
+   * @param pool the pool to get the buffer from
+   * @return the buffer with the message
+   */
+  @NonNull
+  private static ByteBuffer encode(@NonNull String message, @NonNull BufferPool pool) {
+    int length = 0;
+    int chars = message.length();
+    for (int i = 0; i < chars; i++) {
+      char c = message.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < chars
+          && Character.isLowSurrogate(message.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += Character.isSurrogate(c) ? 1 : 3;
+      }
+    }
+    ByteBuffer buffer = pool.acquire(4 + length + FrameWriter.SEPARATOR.length);
+    buffer.position(4);
+    for (int i = 0; i < chars; i++) {
+      char c = message.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < chars
+          && Character.isLowSurrogate(message.charAt(i + 1))) {
+        int point = Character.toCodePoint(c, message.charAt(++i));
+        buffer
+            .put((byte) (0xf0 | point >> 18))
+            .put((byte) (0x80 | point >> 12 & 0x3f))
+            .put((byte) (0x80 | point >> 6 & 0x3f))
+            .put((byte) (0x80 | point & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        // Lone surrogates are replaced like String#getBytes does
+        buffer.put((byte) '?');
+      } else {
+        buffer
+            .put((byte) (0xe0 | c >> 12))
+            .put((byte) (0x80 | c >> 6 & 0x3f))
+            .put((byte) (0x80 | c & 0x3f));
+      }
+    }
+    buffer.limit(buffer.position());
+    buffer.position(4);
+    return buffer;
+  }
+
+  /**
+   * Queues a frame that has already been encoded. Unlike {@link #write(String)} this never waits
+   * for the queue to be drained, callers that do not want to grow the queue should check {@link
+   * #getQueued()} first.
+   *
+   * @param frame the frame to write
+   * @throws IOException if the writer is closed or the queue could not be drained
+   */
+  public void write(@NonNull Frame frame) throws IOException {
+    this.queue(frame);
+    this.schedule();
+  }
+
+  /**
+   * Queues a frame that has already been encoded without writing to the stream in the calling
+   * thread. If this writer drains its queue into a stream the drain runs in the executor, if the
+   * drain fails the writer is stopped and the next write throws the exception. Writers drained by a
+   * subclass are scheduled as usual.
+   *
+   * @param frame the frame to write
+   * @param executor the executor in which the queue is drained
+   * @throws IOException if the writer is closed or the queue could not be scheduled
+   */
+  public void write(@NonNull Frame frame, @NonNull Executor executor) throws IOException {
+    this.queue(frame);
+    if (this.output == null) {
+      this.schedule();
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            try {
+              this.schedule();
+            } catch (IOException ignored) {
+              // The writer has failed and the next write throws the exception
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      this.schedule();
+    }
+  }
+
+  private void queue(@NonNull Frame frame) throws IOException {
+    long bytes = 0;
+    synchronized (this) {
+      this.check();
+      for (ByteBuffer buffer : frame.encode(this.framing, this.compressionThreshold)) {
+        this.frames.add(buffer.duplicate());
+        bytes += buffer.remaining();
+      }
+      this.queued.addAndGet(bytes);
+    }
+    this.metrics.written(bytes);
+  }
+
+  @NonNull
+  private ByteBuffer compress(@NonNull byte[] bytes) {
+    if (this.deflater == null) this.deflater = new Deflater();
+    this.deflater.reset();
+    this.deflater.setInput(bytes);
+    this.deflater.finish();
+    if (this.compressed.length < 64) this.compressed = new byte[Math.max(64, bytes.length / 2)];
+    int size = 0;
+    while (!this.deflater.finished()) {
+      if (size == this.compressed.length) {
+        this.compressed = Arrays.copyOf(this.compressed, size * 2);
+      }
+      size += this.deflater.deflate(this.compressed, size, this.compressed.length - size);
+    }
+    return ByteBuffer.wrap(Arrays.copyOf(this.compressed, size));
+  }
+
+  /**
+   * Makes sure that the queue will be drained. By default this drains the queue into the stream.
+   *
+   * @throws IOException if the queue could not be drained
+   */
+  protected void schedule() throws IOException {
+    this.drain();
+  }
+
+  /**
+   * Get whether the current thread may wait for the queue to be drained. Subclasses which drain the
+   * queue in a different thread must return false in that thread.
+   *
+   * @return true if the thread may wait
+   */
+  protected boolean canWait() {
+    return true;
+  }
+
+  /**
+   * Drains the queue into the stream if no other thread is doing it. Every frame in the queue is
+   * written and then the stream is flushed once.
+   *
+   * @throws IOException if the stream could not be written
+   */
+  public void drain() throws IOException {
+    if (this.output == null) throw new IllegalStateException("This writer has no stream");
+    while (!this.frames.isEmpty() && this.draining.compareAndSet(false, true)) {
+      try {
+        long written = 0;
+        ByteBuffer frame;
+        while ((frame = this.frames.poll()) != null) {
+          written += frame.remaining();
+          if (frame.hasArray()) {
+            this.output.write(
+                frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+          } else {
+            if (this.scratch == null) this.scratch = new byte[8192];
+            while (frame.hasRemaining()) {
+              int length = Math.min(this.scratch.length, frame.remaining());
+              frame.get(this.scratch, 0, length);
+              this.output.write(this.scratch, 0, length);
+            }
+          }
+          this.recycle(frame);
+        }
+        this.output.flush();
+        this.release(written);
+      } catch (IOException e) {
+        this.fail(e);
+        throw e;
+      } finally {
+        this.draining.set(false);
+      }
+    }
+  }
+
+  /**
+   * Get the buffers of the frames waiting to be written. Subclasses draining the queue must remove
+   * the buffers once written and {@link #release(long)} their bytes.
+   *
+   * @return the queue of buffers
+   */
+  @NonNull
+  protected Queue<ByteBuffer> getFrames() {
+    return this.frames;
+  }
+
+  /**
+   * Gives the buffer of a frame that has been written back to the {@link BufferPool} if it came
+   * from it. Subclasses draining the queue should call this once a buffer is removed.
+   *
+   * @param frame the buffer that has been written
+   */
+  protected void recycle(@NonNull ByteBuffer frame) {
+    BufferPool pool = this.pool;
+    if (pool != null) pool.release(frame);
+  }
+
+  /**
+   * Releases the bytes that have been written and wakes the threads waiting for the queue to be
+   * drained.
+   *
+   * @param bytes the amount of bytes written
+   */
+  protected void release(long bytes) {
+    long size = this.queued.addAndGet(-bytes);
+    if (this.highWaterMark != Long.MAX_VALUE && size <= this.highWaterMark) {
+      synchronized (this.drained) {
+        this.drained.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Stops the writer because of an exception. Threads writing messages will get the exception.
+   *
+   * @param exception the exception that stopped the writer
+   */
+  protected void fail(@NonNull IOException exception) {
+    this.failure = exception;
+    synchronized (this.drained) {
+      this.drained.notifyAll();
+    }
+  }
+
+  /**
+   * Get the amount of bytes waiting to be written.
+   *
+   * @return the amount of bytes
+   */
+  public long getQueued() {
+    return this.queued.get();
+  }
+
+  private void await() throws IOException {
+    synchronized (this.drained) {
+      while (this.queued.get() > this.highWaterMark) {
+        this.check();
+        try {
+          this.drained.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the queue to be drained");
+        }
+      }
+    }
+  }
+
+  private void check() throws IOException {
+    if (this.failure != null) throw new IOException("The writer has failed", this.failure);
+    if (this.closed) throw new IOException("The writer is closed");
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.frames.clear();
+    synchronized (this) {
+      if (this.deflater != null) this.deflater.end();
+      this.deflater = null;
+    }
+    synchronized (this.drained) {
+      this.drained.notifyAll();
+    }
+    if (this.output != null) this.output.close();
+  }
+}
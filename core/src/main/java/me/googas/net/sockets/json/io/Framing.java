@@ -0,0 +1,16 @@
+package me.googas.net.sockets.json.io;
+
+/** The way in which json messages are delimited in a stream of bytes. */
+public enum Framing {
+  /**
+   * Each message is followed by a line which only contains {@code ---}. This is the framing used by
+   * every messenger until a different one is negotiated.
+   */
+  LINE,
+  /**
+   * Each message is preceded by 4 bytes, a big-endian int, with the length of its UTF-8 payload.
+   * The receiver knows the size of the message before reading it so it does not have to look for
+   * the end of the message.
+   */
+  LENGTH
+}
@@ -0,0 +1,2 @@
+/** This package contains the framing of json messages in byte streams. */
+package me.googas.net.sockets.json.io;
@@ -0,0 +1,520 @@
+package me.googas.net.sockets.json.local;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.api.Error;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.auth.Authenticator;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.AwaitingRequest;
+import me.googas.net.api.messages.Message;
+import me.googas.net.api.messages.Request;
+import me.googas.net.api.messages.Response;
+import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.api.metrics.Metrics;
+import me.googas.net.sockets.json.JsonReceptor;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
+import me.googas.net.sockets.json.ReceptorSet;
+import me.googas.net.sockets.json.RequestDispatcher;
+import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
+import me.googas.net.sockets.json.reflect.ReflectJsonReceptor;
+import me.googas.starbox.scheduler.TimingWheel;
+
+/**
+ * A {@link Messenger} connected to another one in the same JVM. Messages are passed as objects
+ * through a lock-free queue of the peer instead of being written to a socket, so they are never
+ * serialized to text: the parameters of a request are only converted to json trees to bind the
+ * arguments of the receptors, and the object of a response is handed as is if it is an instance of
+ * the requested class.
+ *
+ * <p>Requests which are authenticated are dispatched by {@link RequestDispatcher} like in a {@link
+ * me.googas.net.sockets.json.JsonMessenger}, a request which is not authenticated fails right away
+ * with an {@link Error}. Requests sent time out in the {@link TimingWheel} after the timeout of the
+ * messenger.
+ *
+ * <p>The queue of a messenger is drained by the thread that adds a message to it if no other thread
+ * is already doing it, so there are no threads listening.
+ *
+ * <p>As objects are shared, requesters should not modify the objects that a receptor responds with
+ * if the receptor keeps a reference to them.
+ */
+public class LocalMessenger implements RequestDispatcher<Response<Object>> {
+
+  /** The receptors to accept requests. */
+  @NonNull @Getter private final ReceptorSet receptors;
+
+  /** The gson to convert the parameters of requests for the receptors. */
+  @NonNull @Getter private final Gson gson;
+
+  /** The handler for exceptions. */
+  @NonNull @Getter private final Consumer<Throwable> throwableHandler;
+
+  /** The millis to timeout requests. */
+  @Getter private final long timeout;
+
+  /** The executor that runs the receptors. */
+  @NonNull @Getter private final Executor executor;
+
+  /** The authenticator for the requests received or null if every request is allowed. */
+  private final Authenticator<LocalMessenger> authenticator;
+
+  /** The metrics in which the messenger records its requests. */
+  @NonNull @Getter private final Metrics metrics;
+
+  /** The requests that are waiting for a response. */
+  @NonNull @Getter private final Map<UUID, AwaitingRequest<?>> requests = new ConcurrentHashMap<>();
+
+  /** The messages received which have not been handled. */
+  @NonNull private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+
+  /** Whether a thread is draining the inbox. */
+  @NonNull private final AtomicBoolean draining = new AtomicBoolean();
+
+  /** The messenger at the other end. */
+  private volatile LocalMessenger peer;
+
+  /** Whether the messenger is closed. */
+  @Getter private volatile boolean closed;
+
+  private LocalMessenger(
+      @NonNull ReceptorSet receptors,
+      @NonNull Gson gson,
+      @NonNull Consumer<Throwable> throwableHandler,
+      long timeout,
+      @NonNull Executor executor,
+      Authenticator<LocalMessenger> authenticator,
+      @NonNull Metrics metrics) {
+    this.receptors = receptors;
+    this.gson = gson;
+    this.throwableHandler = throwableHandler;
+    this.timeout = timeout;
+    this.executor = executor;
+    this.authenticator = authenticator;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Starts the builder for a messenger.
+   *
+   * @return the builder
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the messenger at the other end.
+   *
+   * @return the peer or empty if this messenger has not been connected
+   */
+  @NonNull
+  public Optional<LocalMessenger> getPeer() {
+    return Optional.ofNullable(this.peer);
+  }
+
+  /**
+   * Get the authenticator of the requests received.
+   *
+   * @return the authenticator or empty if every request is allowed
+   */
+  @NonNull
+  public Optional<Authenticator<LocalMessenger>> getAuthenticator() {
+    return Optional.ofNullable(this.authenticator);
+  }
+
+  private void deliver(@NonNull Message message) {
+    this.inbox.add(message);
+    this.drain();
+  }
+
+  private void drain() {
+    while (!this.inbox.isEmpty() && this.draining.compareAndSet(false, true)) {
+      try {
+        Message message;
+        while ((message = this.inbox.poll()) != null) {
+          try {
+            if (message instanceof StarboxRequest) {
+              this.accept((StarboxRequest<?>) message);
+            } else if (message instanceof Response) {
+              this.accept((Response<?>) message);
+            }
+          } catch (RuntimeException e) {
+            this.throwableHandler.accept(e);
+          }
+        }
+      } finally {
+        this.draining.set(false);
+      }
+    }
+  }
+
+  private void accept(@NonNull StarboxRequest<?> sent) {
+    if (this.closed) return;
+    Map<String, JsonElement> parameters = new HashMap<>();
+    sent.getParameters()
+        .forEach(
+            (key, value) ->
+                parameters.put(
+                    key,
+                    value instanceof JsonElement
+                        ? (JsonElement) value
+                        : this.gson.toJsonTree(value)));
+    ReceivedJsonRequest request =
+        new ReceivedJsonRequest(
+            sent.getId(), sent.getMethod(), parameters, sent.getDeadline().orElse(null));
+    if (this.authenticator != null && !this.authenticator.isAuthenticated(this, request)) {
+      this.sendResponse(this.toResponse(request, new Error("Authentication failed"), true));
+      return;
+    }
+    this.acceptRequest(request);
+  }
+
+  @Override
+  public @NonNull Optional<JsonReceptor> getReceptor(@NonNull Request request) {
+    return this.receptors.get(request.getMethod());
+  }
+
+  @Override
+  public @NonNull Response<Object> toResponse(
+      @NonNull ReceivedJsonRequest request, Object object, boolean error) {
+    Response<Object> response = new Response<>(request.getId(), object);
+    response.setError(error);
+    return response;
+  }
+
+  /**
+   * Creates the response with a cached result. The result is handed to the requester as a json tree
+   * which is converted to the requested class.
+   *
+   * @param request the request to respond
+   * @param fragment the result as json
+   * @return the response
+   */
+  @Override
+  public @NonNull Response<Object> toCachedResponse(
+      @NonNull ReceivedJsonRequest request, @NonNull String fragment) {
+    return this.toResponse(request, this.gson.fromJson(fragment, JsonElement.class), false);
+  }
+
+  @Override
+  public void sendResponse(@NonNull Response<Object> response) {
+    LocalMessenger peer = this.peer;
+    if (peer == null || peer.closed) return;
+    peer.deliver(response);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void accept(@NonNull Response<?> response) {
+    AwaitingRequest<T> awaiting = (AwaitingRequest<T>) this.requests.remove(response.getId());
+    if (awaiting == null || !awaiting.done()) return;
+    Optional<?> object = response.getObject();
+    if (response.isError()) {
+      if (object.isPresent()) {
+        awaiting
+            .getExceptionConsumer()
+            .accept(new JsonInternalCommunicationException(((Error) object.get()).getCause()));
+      } else {
+        awaiting.getConsumer().accept(Optional.empty());
+      }
+      return;
+    }
+    Optional<T> converted;
+    try {
+      converted = object.map(value -> this.convert(value, awaiting.getClazz()));
+    } catch (RuntimeException e) {
+      awaiting.getExceptionConsumer().accept(e);
+      return;
+    }
+    awaiting.getConsumer().accept(converted);
+  }
+
+  @SuppressWarnings("unchecked")
+  @NonNull
+  private <T> T convert(@NonNull Object object, @NonNull Class<T> clazz) {
+    Class<?> wrapped = MethodType.methodType(clazz).wrap().returnType();
+    if (wrapped.isInstance(object)) return (T) object;
+    return this.gson.fromJson(this.gson.toJsonTree(object), clazz);
+  }
+
+  private <T> void sendRequest(
+      @NonNull StarboxRequest<T> request,
+      @NonNull Consumer<Optional<T>> consumer,
+      @NonNull Consumer<Throwable> exception) {
+    LocalMessenger peer = this.peer;
+    if (this.closed || peer == null || peer.closed) {
+      exception.accept(
+          new MessengerListenFailException(
+              "The request " + request + " could not be sent as the messenger is not connected"));
+      return;
+    }
+    AwaitingRequest<T> awaiting =
+        new AwaitingRequest<>(request, request.getClazz(), consumer, exception);
+    UUID id = request.getId();
+    this.requests.put(id, awaiting);
+    awaiting.setTimeout(
+        TimingWheel.getShared()
+            .schedule(
+                this.timeout,
+                () -> {
+                  if (awaiting.done()) {
+                    this.requests.remove(id, awaiting);
+                    this.metrics.timeout();
+                    exception.accept(
+                        new MessengerListenFailException(
+                            "The request "
+                                + awaiting
+                                + " has timed out after "
+                                + this.timeout
+                                + "ms"));
+                  }
+                }));
+    peer.deliver(request);
+  }
+
+  /** Handles the messages received which have not been handled yet. */
+  @Override
+  public void listen() {
+    this.drain();
+  }
+
+  /** Closes the messenger and its peer. Requests waiting for a response fail right away. */
+  @Override
+  public void close() {
+    if (this.closed) return;
+    this.closed = true;
+    this.inbox.clear();
+    this.requests
+        .values()
+        .forEach(
+            awaiting -> {
+              if (awaiting.done()) {
+                awaiting
+                    .getExceptionConsumer()
+                    .accept(
+                        new MessengerListenFailException(
+                            "The messenger was closed before " + awaiting + " was responded"));
+              }
+            });
+    this.requests.clear();
+    LocalMessenger peer = this.peer;
+    if (peer != null) peer.close();
+  }
+
+  @Override
+  public <T> void sendRequest(
+      @NonNull StarboxRequest<T> request, @NonNull Consumer<Optional<T>> consumer) {
+    this.sendRequest(request, consumer, this.throwableHandler);
+  }
+
+  @Override
+  public <T> @NonNull CompletableFuture<Optional<T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+    this.sendRequest(request, future::complete, future::completeExceptionally);
+    return future;
+  }
+
+  @Override
+  public <T> @NonNull Optional<T> sendRequest(@NonNull StarboxRequest<T> request)
+      throws MessengerListenFailException {
+    try {
+      return this.sendRequestAsync(request).get(this.timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new MessengerListenFailException(
+          "The request " + request + " has timed out after " + this.timeout + "ms");
+    } catch (ExecutionException e) {
+      throw new MessengerListenFailException(null, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessengerListenFailException("Interrupted while waiting for " + request, e);
+    }
+  }
+
+  /** This class is used to create instances of local messengers in a neat way. */
+  public static class Builder {
+
+    @NonNull private final Set<JsonReceptor> receptors = new HashSet<>();
+    @NonNull private GsonBuilder gson = new GsonBuilder();
+    @NonNull private Consumer<Throwable> handler = Throwable::printStackTrace;
+    private long timeout = 1000;
+    @NonNull private Executor executor = ForkJoinPool.commonPool();
+    private Authenticator<LocalMessenger> authenticator;
+    @NonNull private Metrics metrics = Metrics.DISABLED;
+
+    private Builder() {}
+
+    /**
+     * Adds the parsed receptors from the given object. This will get the receptors from the object
+     * using {@link ReflectJsonReceptor#getReceptors(Object)} and add them to the set
+     *
+     * @param objects the objects to add as receptors
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder addReceptors(@NonNull Object... objects) {
+      for (Object object : objects) {
+        this.addReceptors(ReflectJsonReceptor.getReceptors(object));
+      }
+      return this;
+    }
+
+    /**
+     * Adds all the given receptors.
+     *
+     * @param receptors the receptors to add
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder addReceptors(@NonNull JsonReceptor... receptors) {
+      this.receptors.addAll(Arrays.asList(receptors));
+      return this;
+    }
+
+    /**
+     * Adds all the given receptors.
+     *
+     * @param receptors the receptors to add
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder addReceptors(@NonNull Collection<JsonReceptor> receptors) {
+      this.receptors.addAll(receptors);
+      return this;
+    }
+
+    /**
+     * Set the exception handler that the messenger may use.
+     *
+     * @param handler the new exception handler
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder handle(@NonNull Consumer<Throwable> handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Set the millis to wait for the response of a request before it times out.
+     *
+     * @param timeout the new timeout in millis
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder maxWait(long timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Set the executor that runs the receptors of the requests received.
+     *
+     * @see me.googas.net.api.RequestExecutors
+     * @param executor the executor of requests
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder executor(@NonNull Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Sets the authenticator of the requests received.
+     *
+     * @param authenticator the new authentication method
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder auth(Authenticator<LocalMessenger> authenticator) {
+      this.authenticator = authenticator;
+      return this;
+    }
+
+    /**
+     * Set the metrics in which the messenger records its requests.
+     *
+     * @param metrics the metrics to record
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder metrics(@NonNull Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Set the instance of {@link GsonBuilder}.
+     *
+     * @param gson the new builder
+     * @return this same builder instance
+     */
+    @NonNull
+    public Builder setGson(@NonNull GsonBuilder gson) {
+      this.gson = gson;
+      return this;
+    }
+
+    /**
+     * Creates a messenger which is not connected. Requests sent before it is connected fail.
+     *
+     * @see #connect(LocalMessenger)
+     * @return the messenger
+     */
+    @NonNull
+    public LocalMessenger build() {
+      return new LocalMessenger(
+          new ReceptorSet(this.receptors),
+          this.gson.create(),
+          this.handler,
+          this.timeout,
+          this.executor,
+          this.authenticator,
+          this.metrics);
+    }
+
+    /**
+     * Creates a messenger connected to another. Each messenger sends its requests to the other one.
+     *
+     * @param peer the messenger at the other end
+     * @return the messenger connected to the peer
+     * @throws IllegalStateException if the peer is already connected or closed
+     */
+    @NonNull
+    public LocalMessenger connect(@NonNull LocalMessenger peer) {
+      LocalMessenger messenger = this.build();
+      synchronized (peer) {
+        if (peer.peer != null || peer.closed) {
+          throw new IllegalStateException("The peer is already connected or closed");
+        }
+        messenger.peer = peer;
+        peer.peer = messenger;
+      }
+      return messenger;
+    }
+  }
+}
@@ -1,19 +1,28 @@
 package me.googas.net.sockets.json.reflect;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import lombok.NonNull;
 import me.googas.net.api.Messenger;
+import me.googas.net.api.messages.Request;
 import me.googas.net.sockets.json.JsonMessenger;
 import me.googas.net.sockets.json.JsonReceptor;
 import me.googas.net.sockets.json.ParamName;
 import me.googas.net.sockets.json.ReceivedJsonRequest;
 import me.googas.net.sockets.json.Receptor;
+import me.googas.net.sockets.json.ResponseCache;
 import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
 import me.googas.net.sockets.json.exception.JsonInternalCommunicationException;
 import me.googas.reflect.utility.ReflectUtil;
@@ -40,6 +49,27 @@ public class ReflectJsonReceptor implements JsonReceptor {
   /** The parameters that the receptor requires to be executed. */
   @NonNull private final List<JsonReceptorParameter<?>> parameters;
 
+  /**
+   * The method handle bound to the object which takes the arguments as an array. This is null if
+   * the method could not be unreflected, in that case the method is invoked with reflection.
+   */
+  private final MethodHandle handle;
+
+  /** Which parameters are the {@link Messenger} executing the receptor. */
+  @NonNull private final boolean[] messengers;
+
+  /**
+   * Which parameters are the {@link ReceivedJsonRequest} being executed, so the receptor may read
+   * its {@link ReceivedJsonRequest#getDeadline()}.
+   */
+  @NonNull private final boolean[] requests;
+
+  /** The cache of the results of the receptor or null if they are not cached. */
+  private final ResponseCache cache;
+
+  /** The plan to bind the parameters of a request for a gson instance. */
+  private volatile Plan plan;
+
   /**
    * Create the receptor.
    *
@@ -53,10 +83,61 @@ public class ReflectJsonReceptor implements JsonReceptor {
       @NonNull Object object,
       @NonNull Method method,
       @NonNull List<JsonReceptorParameter<?>> parameters) {
+    this(requestMethod, object, method, parameters, null);
+  }
+
+  /**
+   * Create the receptor.
+   *
+   * @param requestMethod the method which request use to prepare this receptor
+   * @param object the object required to prepare the method
+   * @param method the method to prepare
+   * @param parameters the parameters that the receptor requires to be executed
+   * @param cache the cache of the results of the receptor or null to not cache them
+   * @throws IllegalArgumentException if the results are cached but the method takes the messenger
+   *     or the request, as cached results would be given to other messengers
+   */
+  public ReflectJsonReceptor(
+      @NonNull String requestMethod,
+      @NonNull Object object,
+      @NonNull Method method,
+      @NonNull List<JsonReceptorParameter<?>> parameters,
+      ResponseCache cache) {
     this.requestMethod = requestMethod;
+    this.cache = cache;
     this.object = object;
     this.method = method;
     this.parameters = parameters;
+    this.handle = ReflectJsonReceptor.unreflect(object, method);
+    this.messengers = new boolean[parameters.size()];
+    this.requests = new boolean[parameters.size()];
+    for (int i = 0; i < this.messengers.length; i++) {
+      Class<?> clazz = parameters.get(i).getClazz();
+      this.messengers[i] = clazz.isAssignableFrom(Messenger.class);
+      this.requests[i] =
+          !this.messengers[i]
+              && Request.class.isAssignableFrom(clazz)
+              && clazz.isAssignableFrom(ReceivedJsonRequest.class);
+      if (cache != null && (this.messengers[i] || this.requests[i])) {
+        throw new IllegalArgumentException(
+            "The results of "
+                + method
+                + " cannot be cached as they may depend on the messenger or the request");
+      }
+    }
+  }
+
+  private static MethodHandle unreflect(@NonNull Object object, @NonNull Method method) {
+    try {
+      if (!method.isAccessible()) method.setAccessible(true);
+      return MethodHandles.lookup()
+          .unreflect(method)
+          .bindTo(object)
+          .asSpreader(Object[].class, method.getParameterCount())
+          .asType(MethodType.methodType(Object.class, Object[].class));
+    } catch (IllegalAccessException | SecurityException e) {
+      return null;
+    }
   }
 
   /**
@@ -81,7 +162,12 @@ public class ReflectJsonReceptor implements JsonReceptor {
           }
           parameters.add(new JsonReceptorParameter<>(name, params[i].getType()));
         }
-        receptors.add(new ReflectJsonReceptor(annotation.value(), object, method, parameters));
+        ResponseCache cache =
+            annotation.cache() > 0
+                ? new ResponseCache(annotation.cache(), annotation.cacheSize())
+                : null;
+        receptors.add(
+            new ReflectJsonReceptor(annotation.value(), object, method, parameters, cache));
       }
     }
     return receptors;
@@ -91,53 +177,96 @@ public class ReflectJsonReceptor implements JsonReceptor {
   private Object[] getParameters(
       @NonNull Messenger messenger, @NonNull ReceivedJsonRequest request, @NonNull Gson gson)
       throws JsonExternalCommunicationException {
-    if (this.getParameters().isEmpty()) {
-      return new Object[0];
-    } else {
-      Object[] objects = new Object[this.getParameters().size()];
-
-      for (int i = 0; i < this.getParameters().size(); i++) {
-        JsonReceptorParameter<?> parameter = this.getParameters().get(i);
-        if (parameter.getClazz().isAssignableFrom(Messenger.class)) {
-          objects[i] = messenger;
-        } else if (request.getParameters().containsKey(parameter.getName())) {
-          try {
-            objects[i] =
-                gson.fromJson(
-                    request.getParameters().get(parameter.getName()), parameter.getClazz());
-          } catch (RuntimeException e) {
-            throw new JsonExternalCommunicationException(e + " in request " + request);
-          }
-        } else {
-          throw new JsonExternalCommunicationException(
-              "Missing argument '" + parameter.getName() + "' in request " + request);
-        }
+    if (this.messengers.length == 0) return new Object[0];
+    Plan plan = this.plan;
+    if (plan == null || plan.gson != gson) {
+      plan = new Plan(gson, this.parameters, this.messengers, this.requests);
+      this.plan = plan;
+    }
+    Object[] objects = new Object[this.messengers.length];
+    Map<String, JsonElement> given = request.getParameters();
+    for (int i = 0; i < objects.length; i++) {
+      if (this.messengers[i]) {
+        objects[i] = messenger;
+        continue;
+      } else if (this.requests[i]) {
+        objects[i] = request;
+        continue;
+      }
+      JsonElement element = given.get(plan.names[i]);
+      if (element == null) {
+        throw new JsonExternalCommunicationException(
+            "Missing argument '" + plan.names[i] + "' in request " + request);
+      }
+      try {
+        objects[i] = plan.adapters[i].fromJsonTree(element);
+      } catch (RuntimeException e) {
+        throw new JsonExternalCommunicationException(e + " in request " + request);
       }
-      return objects;
     }
-  }
-
-  @NonNull
-  private List<JsonReceptorParameter<?>> getParameters() {
-    return this.parameters;
+    return objects;
   }
 
   @Override
   public Object execute(
       Messenger messenger, @NonNull ReceivedJsonRequest request, @NonNull Gson gson)
       throws JsonExternalCommunicationException, JsonInternalCommunicationException {
+    Object[] parameters = this.getParameters(messenger, request, gson);
+    if (this.handle == null) {
+      try {
+        return this.method.invoke(this.object, parameters);
+      } catch (IllegalAccessException e) {
+        throw new JsonInternalCommunicationException(e);
+      } catch (InvocationTargetException e) {
+        throw new JsonExternalCommunicationException(e);
+      }
+    }
     try {
-      return this.method.invoke(this.object, this.getParameters(messenger, request, gson));
-    } catch (IllegalAccessException e) {
-      throw new JsonInternalCommunicationException(e);
-    } catch (InvocationTargetException e) {
+      return (Object) this.handle.invokeExact(parameters);
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // Only exceptions are left, the receptor may throw checked ones without declaring them
       throw new JsonExternalCommunicationException(e);
     }
   }
 
+  @Override
+  public @NonNull Optional<ResponseCache> getCache() {
+    return Optional.ofNullable(this.cache);
+  }
+
   @NonNull
   @Override
   public String getRequestMethod() {
     return this.requestMethod;
   }
+
+  /**
+   * The binding of the parameters resolved once for a gson instance: the name of each parameter and
+   * the adapter to convert its json element. The slots of the messenger and the request have no
+   * adapter.
+   */
+  private static class Plan {
+
+    @NonNull private final Gson gson;
+    @NonNull private final String[] names;
+    @NonNull private final TypeAdapter<?>[] adapters;
+
+    private Plan(
+        @NonNull Gson gson,
+        @NonNull List<JsonReceptorParameter<?>> parameters,
+        @NonNull boolean[] messengers,
+        @NonNull boolean[] requests) {
+      this.gson = gson;
+      this.names = new String[parameters.size()];
+      this.adapters = new TypeAdapter<?>[parameters.size()];
+      for (int i = 0; i < this.names.length; i++) {
+        if (messengers[i] || requests[i]) continue;
+        JsonReceptorParameter<?> parameter = parameters.get(i);
+        this.names[i] = parameter.getName();
+        this.adapters[i] = gson.getAdapter(parameter.getClazz());
+      }
+    }
+  }
 }
@@ -0,0 +1,247 @@
+package me.googas.net.sockets.json.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.Getter;
+import lombok.NonNull;
+import me.googas.net.api.Error;
+import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
+import me.googas.net.sockets.json.io.BufferPool;
+import me.googas.net.sockets.json.io.FrameDecoder;
+import me.googas.net.sockets.json.io.FrameReader;
+import me.googas.net.sockets.json.io.FrameWriter;
+
+/**
+ * A client connected to a {@link JsonSocketServer} running in non-blocking mode. Unlike {@link
+ * JsonClientThread} this client is never started as a thread: its channel is registered in a {@link
+ * JsonSelectorLoop} which reads the channel, decodes its messages with the {@link FrameDecoder} of
+ * the input and drains the queue of its {@link FrameWriter} with gathering writes.
+ *
+ * <p>The loop only decodes messages: handshakes and requests are authenticated, admitted and run in
+ * the executor of the server so a slow {@link me.googas.net.api.auth.Authenticator} does not stall
+ * every other channel of the loop.
+ */
+public class JsonChannelClient extends JsonClientThread {
+
+  /** The channel that is connected to the client. */
+  @NonNull @Getter private final SocketChannel channel;
+
+  /** The loop that handles the channel of this client. */
+  @NonNull @Getter private final JsonSelectorLoop loop;
+
+  /** The buffers gathered to be written in the channel at once. */
+  @NonNull private final ByteBuffer[] gather = new ByteBuffer[64];
+
+  /** The key of the channel in the selector of the loop. */
+  private SelectionKey key;
+
+  /**
+   * Create the channel client.
+   *
+   * @param channel the channel that connected to the server
+   * @param server the server to which this client is connected to
+   * @param loop the loop that will handle the channel
+   * @param timeout the time to timeout requests
+   * @throws IOException if the channel could not be set in non-blocking mode
+   */
+  public JsonChannelClient(
+      @NonNull SocketChannel channel,
+      @NonNull JsonSocketServer server,
+      @NonNull JsonSelectorLoop loop,
+      long timeout)
+      throws IOException {
+    this(channel, server, loop, timeout, new ChannelWriter(loop));
+  }
+
+  private JsonChannelClient(
+      @NonNull SocketChannel channel,
+      @NonNull JsonSocketServer server,
+      @NonNull JsonSelectorLoop loop,
+      long timeout,
+      @NonNull ChannelWriter output)
+      throws IOException {
+    super(channel.socket(), new ChannelReader(), output, server, timeout);
+    this.channel = channel;
+    this.loop = loop;
+    output.client = this;
+    output.setPool(BufferPool.getShared());
+    channel.configureBlocking(false);
+  }
+
+  /**
+   * Registers the channel in the selector. This must be called from the loop.
+   *
+   * @param selector the selector of the loop
+   * @throws ClosedChannelException if the channel is already closed
+   */
+  void register(@NonNull Selector selector) throws ClosedChannelException {
+    this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+  }
+
+  /**
+   * Reads the available bytes in the channel and handles every message that gets completed. The
+   * bytes are read into the buffer of the loop and every one of them is consumed by the decoder,
+   * which keeps the ones of an incomplete message. This must be called from the loop.
+   *
+   * @return false if the end of the stream has been reached
+   * @throws IOException if the channel could not be read
+   */
+  boolean read() throws IOException {
+    ByteBuffer in = this.loop.in;
+    try {
+      if (this.channel.read(in) == -1) return false;
+      in.flip();
+      FrameDecoder decoder = this.getInput().getDecoder();
+      String message;
+      while ((message = decoder.decode(in)) != null) {
+        this.setLastMessage(System.currentTimeMillis());
+        this.handle(message);
+      }
+      return true;
+    } finally {
+      in.clear();
+    }
+  }
+
+  /**
+   * Writes as many queued frames as the channel accepts, gathering them in a single write. If some
+   * could not be written the loop will be notified once the channel is writable again. This must be
+   * called from the loop.
+   */
+  void flush() {
+    ChannelWriter output = (ChannelWriter) this.getOutput();
+    output.scheduled.set(false);
+    if (this.key == null || !this.key.isValid()) return;
+    Queue<ByteBuffer> frames = output.getFrames();
+    try {
+      while (true) {
+        int count = 0;
+        for (ByteBuffer frame : frames) {
+          if (count == this.gather.length) break;
+          this.gather[count++] = frame;
+        }
+        if (count == 0) {
+          this.key.interestOps(SelectionKey.OP_READ);
+          return;
+        }
+        long written = this.channel.write(this.gather, 0, count);
+        output.release(written);
+        boolean full = this.gather[count - 1].hasRemaining();
+        Arrays.fill(this.gather, 0, count, null);
+        ByteBuffer frame;
+        while ((frame = frames.peek()) != null && !frame.hasRemaining()) {
+          // The queue may have been cleared by close() after the peek
+          if (frames.poll() == frame) output.recycle(frame);
+        }
+        if (full) {
+          this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          return;
+        }
+      }
+    } catch (IOException e) {
+      output.fail(e);
+      if (!this.isClosed()) {
+        this.getThrowableHandler().accept(e);
+        this.close();
+      }
+    }
+  }
+
+  @Override
+  public void listen() throws MessengerListenFailException {
+    throw new MessengerListenFailException("Channel clients are read by their selector loop");
+  }
+
+  @Override
+  public void close() {
+    this.loop.getClients().remove(this);
+    if (this.key != null) this.key.cancel();
+    super.close();
+  }
+
+  @Override
+  public void acceptRequest(@NonNull ReceivedJsonRequest request) {
+    try {
+      this.getExecutor().execute(() -> this.acceptRequest(request, Runnable::run));
+    } catch (RejectedExecutionException e) {
+      this.getMetrics().rejected(request.getMethod());
+      this.sendResponse(
+          this.toResponse(
+              request, new Error("The request '" + request.getMethod() + "' was rejected"), true));
+    }
+  }
+
+  @Override
+  public void acceptHandshake(@NonNull ReceivedJsonRequest request) {
+    try {
+      this.getExecutor().execute(() -> super.acceptHandshake(request));
+    } catch (RejectedExecutionException e) {
+      // The framing of the client would be unknown if the handshake is not answered
+      this.getThrowableHandler().accept(e);
+      this.close();
+    }
+  }
+
+  /** Decodes the bytes that the loop reads from the channel, it has no stream of its own. */
+  private static class ChannelReader extends FrameReader {}
+
+  /** Queues the frames to be drained by the loop of the client. */
+  private static class ChannelWriter extends FrameWriter {
+
+    /** The loop that drains the frames. */
+    @NonNull private final JsonSelectorLoop loop;
+
+    /** Whether the loop has been asked to drain the frames and has not done it yet. */
+    @NonNull private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** The client that owns this writer. */
+    private JsonChannelClient client;
+
+    private ChannelWriter(@NonNull JsonSelectorLoop loop) {
+      this.loop = loop;
+    }
+
+    @Override
+    protected void schedule() {
+      if (this.client != null && this.scheduled.compareAndSet(false, true)) {
+        this.loop.execute(this.client::flush);
+      }
+    }
+
+    @Override
+    protected boolean canWait() {
+      return Thread.currentThread() != this.loop;
+    }
+
+    // The queue is drained by the client so these are overridden to be visible in this package
+
+    @Override
+    protected @NonNull Queue<ByteBuffer> getFrames() {
+      return super.getFrames();
+    }
+
+    @Override
+    protected void recycle(@NonNull ByteBuffer frame) {
+      super.recycle(frame);
+    }
+
+    @Override
+    protected void release(long bytes) {
+      super.release(bytes);
+    }
+
+    @Override
+    protected void fail(@NonNull IOException exception) {
+      super.fail(exception);
+    }
+  }
+}
@@ -1,17 +1,17 @@
 package me.googas.net.sockets.json.server;
 
 import com.google.gson.Gson;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.NonNull;
@@ -20,9 +20,13 @@ import me.googas.net.api.Error;
 import me.googas.net.api.auth.Authenticator;
 import me.googas.net.api.messages.AwaitingRequest;
 import me.googas.net.api.messages.Response;
+import me.googas.net.api.metrics.Metrics;
 import me.googas.net.sockets.json.JsonMessenger;
 import me.googas.net.sockets.json.JsonReceptor;
 import me.googas.net.sockets.json.ReceivedJsonRequest;
+import me.googas.net.sockets.json.io.FrameReader;
+import me.googas.net.sockets.json.io.FrameWriter;
+import me.googas.starbox.scheduler.TimingWheel;
 
 /**
  * A guido client thread is the {@link Thread} where a client connected to the {@link
@@ -30,27 +34,39 @@ import me.googas.net.sockets.json.ReceivedJsonRequest;
  */
 public class JsonClientThread extends Thread implements JsonMessenger {
 
-  /** The builder to build json strings. */
-  @NonNull @Getter private final StringBuilder builder = new StringBuilder();
-
   /** The socket that is connected to the client. */
   @NonNull @Getter private final Socket socket;
 
   /** The line that is being an input into the server. */
-  @NonNull @Getter private final BufferedReader input;
+  @NonNull @Getter private final FrameReader input;
 
   /** The output used to send requests to the client. */
-  @NonNull @Getter private final PrintWriter output;
+  @NonNull @Getter private final FrameWriter output;
 
   /** The server to which this client is connected to. */
   @NonNull @Getter private final JsonSocketServer server;
 
   /** The request that are waiting for a response. */
-  @NonNull @Getter private final Map<AwaitingRequest<?>, Long> requests = new HashMap<>();
+  @NonNull @Getter private final Map<UUID, AwaitingRequest<?>> requests = new ConcurrentHashMap<>();
 
   /** The time to timeout requests. */
   @Getter private final long timeout;
 
+  /** The limits of the requests of the client. */
+  @NonNull @Getter private final Limits.Session limits;
+
+  /** The lock of the session of the client. */
+  @NonNull private final Object session = new Object();
+
+  /** Whether the session of the client is authenticated. */
+  @Getter private volatile boolean authenticated;
+
+  /** The handshake with which the session was authenticated. */
+  private ReceivedJsonRequest credentials;
+
+  /** The next revalidation of the session. */
+  private TimingWheel.Timeout revalidation;
+
   /** Whether the messenger is closed. */
   @Getter @Setter private boolean closed;
 
@@ -67,14 +83,35 @@ public class JsonClientThread extends Thread implements JsonMessenger {
    */
   public JsonClientThread(Socket socket, @NonNull JsonSocketServer server, long timeout)
       throws IOException {
+    this(
+        socket,
+        new FrameReader(new BufferedInputStream(socket.getInputStream())),
+        new FrameWriter(new BufferedOutputStream(socket.getOutputStream())),
+        server,
+        timeout);
+  }
+
+  /**
+   * Create the client thread.
+   *
+   * @param socket the socket that connected to the server
+   * @param input the input to receive messages from the client
+   * @param output the output to send messages to the client
+   * @param server the server to which this client is connected to
+   * @param timeout the time to timeout requests
+   */
+  protected JsonClientThread(
+      @NonNull Socket socket,
+      @NonNull FrameReader input,
+      @NonNull FrameWriter output,
+      @NonNull JsonSocketServer server,
+      long timeout) {
     this.socket = socket;
-    this.output =
-        new PrintWriter(
-            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
-    this.input =
-        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    this.input = input;
+    this.output = output;
     this.server = server;
     this.timeout = timeout;
+    this.limits = server.getLimits().session();
   }
 
   @Override
@@ -82,6 +119,11 @@ public class JsonClientThread extends Thread implements JsonMessenger {
     return this.server.getReceptors();
   }
 
+  @Override
+  public @NonNull Optional<JsonReceptor> getReceptor(@NonNull String method) {
+    return this.server.getReceptors().get(method);
+  }
+
   @Override
   public void run() {
     JsonMessenger.super.run();
@@ -97,11 +139,33 @@ public class JsonClientThread extends Thread implements JsonMessenger {
     return this.server.getThrowableHandler();
   }
 
+  @Override
+  public @NonNull Executor getExecutor() {
+    return this.server.getExecutor();
+  }
+
+  @Override
+  public int getCompressionThreshold() {
+    return this.server.getCompressionThreshold();
+  }
+
+  @Override
+  public @NonNull Metrics getMetrics() {
+    return this.server.getMetrics();
+  }
+
   @Override
   public void close() {
     this.setClosed(true);
+    synchronized (this.session) {
+      if (this.revalidation != null) this.revalidation.cancel();
+    }
     this.requests.clear();
-    this.output.close();
+    try {
+      this.output.close();
+    } catch (IOException e) {
+      this.server.getThrowableHandler().accept(e);
+    }
     try {
       this.socket.close();
     } catch (IOException e) {
@@ -117,18 +181,85 @@ public class JsonClientThread extends Thread implements JsonMessenger {
   }
 
   @Override
-  public void acceptRequest(@NonNull ReceivedJsonRequest request) {
+  public void acceptRequest(@NonNull ReceivedJsonRequest request, @NonNull Executor executor) {
     Optional<Authenticator<JsonClientThread>> optional = this.server.getAuthenticator();
-    if (optional.isPresent()) {
-      if (optional.get().isAuthenticated(this, request)) {
-        JsonMessenger.super.acceptRequest(request);
-      } else {
-        this.printLine(
-            this.getGson()
-                .toJson(new Response<>(request.getId(), new Error("Authentication failed"))));
-      }
+    boolean authenticated;
+    if (!optional.isPresent()) {
+      authenticated = true;
+    } else if (this.server.isSessionAuth()) {
+      authenticated = this.authenticated;
     } else {
-      JsonMessenger.super.acceptRequest(request);
+      authenticated = optional.get().isAuthenticated(this, request);
     }
+    if (authenticated) {
+      JsonMessenger.super.acceptRequest(request, executor);
+    } else {
+      this.printLine(
+          this.getGson()
+              .toJson(new Response<>(request.getId(), new Error("Authentication failed"))));
+    }
+  }
+
+  @Override
+  public @NonNull Optional<String> admit(@NonNull ReceivedJsonRequest request) {
+    return this.limits.admit();
+  }
+
+  @Override
+  public void release(@NonNull ReceivedJsonRequest request) {
+    this.limits.release();
+  }
+
+  /**
+   * Authenticates the session of the client if the server authenticates sessions instead of
+   * requests. The result is kept until the client sends another handshake and, if the server has a
+   * revalidation period, the credentials are checked again after each period.
+   *
+   * @param handshake the handshake request
+   * @return whether the session has been authenticated or null if the server does not authenticate
+   *     sessions
+   */
+  @Override
+  public Boolean authenticate(@NonNull ReceivedJsonRequest handshake) {
+    Optional<Authenticator<JsonClientThread>> optional = this.server.getAuthenticator();
+    if (!this.server.isSessionAuth() || !optional.isPresent()) return null;
+    synchronized (this.session) {
+      if (this.revalidation != null) this.revalidation.cancel();
+      this.credentials = handshake;
+      this.authenticated = optional.get().isAuthenticated(this, handshake);
+      if (this.authenticated) this.revalidate(optional.get(), handshake);
+      return this.authenticated;
+    }
+  }
+
+  private void revalidate(
+      @NonNull Authenticator<JsonClientThread> authenticator,
+      @NonNull ReceivedJsonRequest credentials) {
+    long period = this.server.getRevalidation();
+    if (period <= 0) return;
+    this.revalidation =
+        this.getTimingWheel()
+            .schedule(
+                period,
+                () -> {
+                  try {
+                    this.getExecutor()
+                        .execute(
+                            () -> {
+                              synchronized (this.session) {
+                                if (this.isClosed() || this.credentials != credentials) return;
+                                this.authenticated =
+                                    authenticator.isAuthenticated(this, credentials);
+                                if (this.authenticated) this.revalidate(authenticator, credentials);
+                              }
+                            });
+                  } catch (RejectedExecutionException e) {
+                    synchronized (this.session) {
+                      if (this.credentials == credentials) {
+                        this.revalidate(authenticator, credentials);
+                      }
+                    }
+                  }
+                });
   }
 }
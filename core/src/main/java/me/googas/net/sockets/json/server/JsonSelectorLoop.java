@@ -0,0 +1,136 @@
+package me.googas.net.sockets.json.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An event loop which uses a {@link Selector} to read and write the channels of many {@link
+ * JsonChannelClient}. Complete messages are given to {@link JsonChannelClient#handle(String)} so
+ * requests get dispatched to the receptors of the {@link JsonSocketServer} as usual.
+ */
+public class JsonSelectorLoop extends Thread {
+
+  /** The selector of this loop. */
+  @NonNull private final Selector selector;
+
+  /** The server that owns this loop. */
+  @NonNull private final JsonSocketServer server;
+
+  /** The tasks that must be run inside the loop. */
+  @NonNull private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+  /** The clients that are being handled by this loop. */
+  @NonNull @Getter private final Set<JsonChannelClient> clients = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The buffer into which the channels of the loop are read. It is direct so the channels read into
+   * it without copying from a temporary buffer, and it is shared as they are read one at a time.
+   */
+  @NonNull final ByteBuffer in = ByteBuffer.allocateDirect(8192);
+
+  /** Whether the loop is closed. */
+  @Getter private volatile boolean closed;
+
+  /**
+   * Create the loop.
+   *
+   * @param server the server that owns this loop
+   * @throws IOException if the selector could not be opened
+   */
+  public JsonSelectorLoop(@NonNull JsonSocketServer server) throws IOException {
+    this.selector = Selector.open();
+    this.server = server;
+  }
+
+  /**
+   * Registers a client to be handled by this loop.
+   *
+   * @param client the client to register
+   */
+  public void register(@NonNull JsonChannelClient client) {
+    this.clients.add(client);
+    this.execute(
+        () -> {
+          try {
+            client.register(this.selector);
+          } catch (IOException e) {
+            this.server.getThrowableHandler().accept(e);
+            client.close();
+          }
+        });
+  }
+
+  /**
+   * Run a task inside the loop.
+   *
+   * @param task the task to run
+   */
+  public void execute(@NonNull Runnable task) {
+    if (Thread.currentThread() == this) {
+      task.run();
+    } else {
+      this.tasks.add(task);
+      this.selector.wakeup();
+    }
+  }
+
+  /** Closes the loop. The clients are not closed by the loop, that must be done by the server. */
+  public void close() {
+    this.closed = true;
+    this.selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    while (!this.closed) {
+      try {
+        this.selector.select();
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+          task.run();
+        }
+        Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+          this.select(key, (JsonChannelClient) key.attachment());
+        }
+      } catch (IOException e) {
+        this.server.getThrowableHandler().accept(e);
+        break;
+      }
+    }
+    try {
+      this.selector.close();
+    } catch (IOException e) {
+      this.server.getThrowableHandler().accept(e);
+    }
+  }
+
+  private void select(@NonNull SelectionKey key, @NonNull JsonChannelClient client) {
+    try {
+      if (key.isReadable() && !client.read()) {
+        if (!client.isClosed()) client.close();
+        return;
+      }
+      if (key.isValid() && key.isWritable()) client.flush();
+    } catch (IOException e) {
+      if (!client.isClosed()) {
+        this.server.getThrowableHandler().accept(e);
+        client.close();
+      }
+    } catch (CancelledKeyException e) {
+      if (!client.isClosed()) client.close();
+    }
+  }
+}
@@ -3,8 +3,11 @@ package me.googas.net.sockets.json.server;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -14,17 +17,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import me.googas.net.api.Server;
 import me.googas.net.api.auth.Authenticator;
 import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Broadcast;
 import me.googas.net.api.messages.Message;
 import me.googas.net.api.messages.StarboxRequest;
+import me.googas.net.api.metrics.Metrics;
+import me.googas.net.api.metrics.RequestMetrics;
 import me.googas.net.sockets.json.JsonReceptor;
+import me.googas.net.sockets.json.ReceptorSet;
 import me.googas.net.sockets.json.adapters.MessageDeserializer;
+import me.googas.net.sockets.json.io.FrameWriter;
 import me.googas.net.sockets.json.reflect.ReflectJsonReceptor;
 
 /** An implementation for socket servers for guido. */
@@ -34,10 +47,19 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
   @NonNull private final ServerSocket server;
 
   /** The set of clients that are connected to the server. */
-  @NonNull @Getter private final Set<JsonClientThread> clients = new HashSet<>();
+  @NonNull @Getter private final Set<JsonClientThread> clients = ConcurrentHashMap.newKeySet();
 
-  /** The receptors to accept requests. */
-  @NonNull @Getter private final Set<JsonReceptor> receptors;
+  /**
+   * The loops that handle the clients in non-blocking mode. If empty each client gets its own
+   * {@link JsonClientThread}.
+   */
+  @NonNull private final List<JsonSelectorLoop> loops = new ArrayList<>();
+
+  /** The receptors to accept requests mapped by their method. */
+  @NonNull @Getter private final ReceptorSet receptors;
+
+  /** The topics to which the clients are subscribed. */
+  @NonNull @Getter private final Topics topics = new Topics(this);
 
   /** To handle exceptions thrown. */
   @NonNull @Getter private final Consumer<Throwable> throwableHandler;
@@ -47,6 +69,38 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
   @Getter private final long timeout;
   /** The authenticator for the requests. */
   private Authenticator<JsonClientThread> authenticator;
+  /** The executor that runs the requests of the clients. */
+  @NonNull @Getter @Setter private Executor executor = ForkJoinPool.commonPool();
+  /**
+   * The maximum amount of bytes queued to be written to a client before the threads writing to it
+   * have to wait.
+   *
+   * @see FrameWriter#getHighWaterMark()
+   */
+  @Getter @Setter private long highWaterMark = Long.MAX_VALUE;
+  /**
+   * The minimum size in bytes of the messages compressed for clients that negotiate compression.
+   * Negative if the server does not accept compression.
+   */
+  @Getter @Setter private int compressionThreshold = 1024;
+  /**
+   * Whether the authenticator checks the credentials of the session given in the handshake of each
+   * client once instead of every request.
+   */
+  @Getter @Setter private boolean sessionAuth;
+  /**
+   * The millis after which the credentials of an authenticated session are checked again. 0 if they
+   * are never checked again.
+   */
+  @Getter @Setter private long revalidation;
+  /** The metrics in which the clients record their requests and bytes. */
+  @NonNull @Getter @Setter private Metrics metrics = Metrics.DISABLED;
+  /**
+   * The limits of the requests admitted, they apply to the clients connected after they are set.
+   */
+  @NonNull @Getter @Setter private Limits limits = Limits.NONE;
+  /** The index of the next loop to register a client. */
+  private int next;
 
   /**
    * Create the server.
@@ -67,13 +121,47 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
       long timeout,
       Authenticator<JsonClientThread> authenticator) {
     this.server = server;
-    this.receptors = receptors;
+    this.receptors = new ReceptorSet(receptors);
+    this.receptors.addAll(this.topics.getReceptors());
     this.throwableHandler = throwableHandler;
     this.gson = gson;
     this.timeout = timeout;
     this.authenticator = authenticator;
   }
 
+  /**
+   * Create the server in non-blocking mode. Instead of a thread per client the connected channels
+   * will be handled by a fixed amount of {@link JsonSelectorLoop}.
+   *
+   * @param server the socket server which will send rand receive messages. This must be the socket
+   *     of a {@link ServerSocketChannel}
+   * @param receptors the receptors to handle requests
+   * @param throwableHandler the handler for exceptions
+   * @param gson the gson to serialize and deserialize objects
+   * @param timeout the maximum timeout for messages in millis
+   * @param authenticator the authentication methods that clients must complete to connect in the
+   *     server
+   * @param selectors the amount of loops to handle the clients
+   * @throws IOException if the selectors could not be opened
+   */
+  protected JsonSocketServer(
+      @NonNull ServerSocket server,
+      @NonNull Set<JsonReceptor> receptors,
+      @NonNull Consumer<Throwable> throwableHandler,
+      @NonNull Gson gson,
+      long timeout,
+      Authenticator<JsonClientThread> authenticator,
+      int selectors)
+      throws IOException {
+    this(server, receptors, throwableHandler, gson, timeout, authenticator);
+    if (server.getChannel() == null && selectors > 0) {
+      throw new IllegalArgumentException("Non-blocking servers require a ServerSocketChannel");
+    }
+    for (int i = 0; i < selectors; i++) {
+      this.loops.add(new JsonSelectorLoop(this));
+    }
+  }
+
   /**
    * Creates the guido socket server
    *
@@ -95,7 +183,8 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
       long timeout)
       throws IOException {
     this.server = new ServerSocket(port);
-    this.receptors = receptors;
+    this.receptors = new ReceptorSet(receptors);
+    this.receptors.addAll(this.topics.getReceptors());
     this.throwableHandler = throwableHandler;
     this.authenticator = authenticator;
     this.gson = gson;
@@ -141,6 +230,7 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
    */
   public void remove(@NonNull JsonClientThread client) {
     this.clients.remove(client);
+    this.topics.unsubscribe(client);
     this.onRemove(client);
   }
 
@@ -181,6 +271,27 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
     return this;
   }
 
+  /**
+   * Publishes an object to every client subscribed to a topic without waiting for responses.
+   *
+   * @see Topics#publish(String, Object)
+   * @param topic the topic to publish to
+   * @param object the object to publish
+   * @return the amount of subscribers to which the publication was queued
+   */
+  public int publish(@NonNull String topic, Object object) {
+    return this.topics.publish(topic, object);
+  }
+
+  /**
+   * Get whether this server is handling its clients in non-blocking mode.
+   *
+   * @return true if the clients are handled by {@link JsonSelectorLoop}
+   */
+  public boolean isNonBlocking() {
+    return !this.loops.isEmpty();
+  }
+
   @Override
   public void close() throws IOException {
     List<JsonClientThread> copy = new ArrayList<>(this.getClients());
@@ -188,16 +299,18 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
       this.disconnect(client);
     }
     this.server.close();
+    this.loops.forEach(JsonSelectorLoop::close);
     this.receptors.clear();
   }
 
   @Override
   public void run() {
+    this.loops.forEach(Thread::start);
     while (true) {
       try {
         Socket socket = this.server.accept();
-        JsonClientThread client = new JsonClientThread(socket, this, this.timeout);
-        client.start();
+        socket.setTcpNoDelay(true);
+        JsonClientThread client = this.accept(socket);
         this.clients.add(client);
         this.onConnection(client);
       } catch (IOException e) {
@@ -207,32 +320,81 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
     }
   }
 
+  /**
+   * Create the client for an accepted socket. If the server is not in non-blocking mode the client
+   * will be started in its own thread else it will be registered in one of the loops.
+   *
+   * @param socket the socket that was accepted
+   * @return the client connected with the socket
+   * @throws IOException if the streams of the socket could not be opened
+   */
+  @NonNull
+  protected JsonClientThread accept(@NonNull Socket socket) throws IOException {
+    SocketChannel channel = socket.getChannel();
+    if (this.loops.isEmpty() || channel == null) {
+      JsonClientThread client = new JsonClientThread(socket, this, this.timeout);
+      client.getOutput().setHighWaterMark(this.highWaterMark);
+      client.getOutput().setMetrics(this.metrics);
+      client.getInput().getDecoder().setMetrics(this.metrics);
+      client.start();
+      return client;
+    }
+    JsonSelectorLoop loop = this.loops.get(this.next);
+    this.next = (this.next + 1) % this.loops.size();
+    JsonChannelClient client = new JsonChannelClient(channel, this, loop, this.timeout);
+    client.getOutput().setHighWaterMark(this.highWaterMark);
+    client.getOutput().setMetrics(this.metrics);
+    client.getInput().getDecoder().setMetrics(this.metrics);
+    loop.register(client);
+    return client;
+  }
+
   @Override
   public <T> void sendRequest(
       @NonNull StarboxRequest<T> request, BiConsumer<JsonClientThread, Optional<T>> consumer) {
     this.clients.forEach(
-        client -> {
-          try {
-            consumer.accept(client, client.sendRequest(request));
-          } catch (MessengerListenFailException e) {
-            this.throwableHandler.accept(e);
-          }
-        });
+        client ->
+            client
+                .sendRequestAsync(request)
+                .whenComplete(
+                    (optional, throwable) -> {
+                      if (throwable != null) {
+                        this.throwableHandler.accept(throwable);
+                      } else {
+                        consumer.accept(client, optional);
+                      }
+                    }));
   }
 
   @Override
   @NonNull
   public <T> Map<JsonClientThread, Optional<T>> sendRequest(@NonNull StarboxRequest<T> request) {
-    Map<JsonClientThread, Optional<T>> responses = new HashMap<>();
-    this.clients.forEach(
-        client -> {
-          try {
-            responses.put(client, client.sendRequest(request));
-          } catch (MessengerListenFailException e) {
-            this.throwableHandler.accept(e);
-          }
-        });
-    return responses;
+    Broadcast<JsonClientThread, T> broadcast = this.sendRequestAsync(request).join();
+    broadcast
+        .getFailures()
+        .values()
+        .forEach(
+            throwable ->
+                this.throwableHandler.accept(
+                    throwable instanceof MessengerListenFailException
+                        ? throwable
+                        : new MessengerListenFailException(null, throwable)));
+    return new HashMap<>(broadcast);
+  }
+
+  /**
+   * Send a request to every client at once and gather their responses under the timeout of the
+   * server.
+   *
+   * @see #sendRequestAsync(StarboxRequest, long)
+   * @param request the request to send
+   * @param <T> the type of object requested
+   * @return a future completed with the responses of the clients
+   */
+  @NonNull
+  public <T> CompletableFuture<Broadcast<JsonClientThread, T>> sendRequestAsync(
+      @NonNull StarboxRequest<T> request) {
+    return this.sendRequestAsync(request, this.timeout);
   }
 
   /**
@@ -253,6 +415,16 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
     @NonNull private Consumer<Throwable> handler;
     private long timeout;
     private Authenticator<JsonClientThread> authenticator;
+    private int selectors;
+    @NonNull private Executor executor;
+    private long highWaterMark;
+    private int compressionThreshold;
+    private boolean sessionAuth;
+    private long revalidation;
+    @NonNull private Metrics metrics;
+    @NonNull private Limits limits;
+    @NonNull private Topics.Overflow overflow;
+    private long topicLimit;
 
     /**
      * Create the builder.
@@ -265,6 +437,13 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
       this.gson = new GsonBuilder().registerTypeAdapter(Message.class, new MessageDeserializer());
       this.handler = Throwable::printStackTrace;
       this.timeout = 1000;
+      this.executor = ForkJoinPool.commonPool();
+      this.highWaterMark = Long.MAX_VALUE;
+      this.compressionThreshold = 1024;
+      this.metrics = Metrics.DISABLED;
+      this.limits = Limits.NONE;
+      this.overflow = Topics.Overflow.DROP;
+      this.topicLimit = 1024 * 1024;
     }
 
     /**
@@ -291,6 +470,131 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
       return this;
     }
 
+    /**
+     * Set the amount of selector loops that will handle the clients. If this is greater than 0 the
+     * server will be started in non-blocking mode: instead of a thread per client the channels of
+     * the clients are shared between the loops. By default this is 0.
+     *
+     * @param selectors the amount of loops
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder selectors(int selectors) {
+      if (selectors < 0) throw new IllegalArgumentException("The amount of selectors must be >= 0");
+      this.selectors = selectors;
+      return this;
+    }
+
+    /**
+     * Set the executor that will run the requests of the clients. By default this is the common
+     * {@link ForkJoinPool}.
+     *
+     * @see me.googas.net.api.RequestExecutors
+     * @param executor the new executor
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder executor(@NonNull Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Set what to do with the publications for subscribers that are too slow: subscribers which
+     * have more than the limit of bytes waiting to be written. By default publications are dropped
+     * once a subscriber has 1 MiB waiting.
+     *
+     * @param overflow the policy for slow subscribers
+     * @param limit the bytes waiting to be written to consider a subscriber too slow
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder topics(@NonNull Topics.Overflow overflow, long limit) {
+      if (limit < 0) throw new IllegalArgumentException("The limit must be >= 0");
+      this.overflow = overflow;
+      this.topicLimit = limit;
+      return this;
+    }
+
+    /**
+     * Set the metrics in which the clients of the server record the requests they accept, the bytes
+     * they read and write, the requests that time out and the messages that could not be decoded.
+     * Use {@link Metrics#snapshot()} to export them.
+     *
+     * @see RequestMetrics
+     * @param metrics the metrics to record
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder metrics(@NonNull Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Limit the requests that the server admits. Requests that exceed a limit are rejected with an
+     * {@link me.googas.net.api.Error} before they are scheduled. A limit that is not greater than 0
+     * is not enforced.
+     *
+     * @see Limits
+     * @param rate the requests per second that each client may send
+     * @param burst the requests that each client may send at once before it is limited by the rate
+     * @param perClient the requests of each client that may run at once
+     * @param global the requests of every client that may run at once
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder limits(double rate, int burst, int perClient, int global) {
+      this.limits = new Limits(rate, burst, perClient, global);
+      return this;
+    }
+
+    /**
+     * Set the maximum amount of bytes queued to be written to a client before the threads writing
+     * to it have to wait for the client to read. By default threads never wait.
+     *
+     * @param bytes the high-water mark in bytes
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder highWaterMark(long bytes) {
+      if (bytes <= 0) throw new IllegalArgumentException("The high-water mark must be > 0");
+      this.highWaterMark = bytes;
+      return this;
+    }
+
+    /**
+     * Set the minimum size in bytes of the messages compressed for clients that negotiate
+     * compression. A negative threshold makes the server refuse compression. By default this is
+     * 1024.
+     *
+     * @param threshold the threshold in bytes
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder compression(int threshold) {
+      this.compressionThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Authenticate the session of each client once instead of every request. Clients send their
+     * credentials as the parameters of the {@link me.googas.net.sockets.json.Handshake} and the
+     * result is kept for the rest of the connection. Requests sent before an authenticated
+     * handshake fail.
+     *
+     * @param revalidation the millis after which the credentials are checked again, 0 to never
+     *     check them again
+     * @return this same builder instance
+     */
+    @NonNull
+    public ServerBuilder sessionAuth(long revalidation) {
+      if (revalidation < 0) throw new IllegalArgumentException("The revalidation must be >= 0");
+      this.sessionAuth = true;
+      this.revalidation = revalidation;
+      return this;
+    }
+
     /**
      * Sets the authentication method which clients may use.
      *
@@ -350,14 +654,38 @@ public class JsonSocketServer extends Thread implements Server<JsonClientThread>
      */
     @NonNull
     public JsonSocketServer start() throws IOException {
-      JsonSocketServer server =
-          new JsonSocketServer(
-              new ServerSocket(this.port),
-              this.receptors,
-              this.handler,
-              this.gson.create(),
-              this.timeout,
-              this.authenticator);
+      JsonSocketServer server;
+      if (this.selectors > 0) {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress(this.port));
+        server =
+            new JsonSocketServer(
+                channel.socket(),
+                this.receptors,
+                this.handler,
+                this.gson.create(),
+                this.timeout,
+                this.authenticator,
+                this.selectors);
+      } else {
+        server =
+            new JsonSocketServer(
+                new ServerSocket(this.port),
+                this.receptors,
+                this.handler,
+                this.gson.create(),
+                this.timeout,
+                this.authenticator);
+      }
+      server.setExecutor(this.executor);
+      server.setHighWaterMark(this.highWaterMark);
+      server.setCompressionThreshold(this.compressionThreshold);
+      server.setSessionAuth(this.sessionAuth);
+      server.setRevalidation(this.revalidation);
+      server.setMetrics(this.metrics);
+      server.setLimits(this.limits);
+      server.getTopics().setOverflow(this.overflow);
+      server.getTopics().setLimit(this.topicLimit);
       server.start();
       return server;
     }
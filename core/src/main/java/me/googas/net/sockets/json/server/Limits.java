@@ -0,0 +1,143 @@
+package me.googas.net.sockets.json.server;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The limits of the requests that a {@link JsonSocketServer} admits. Each client has a token bucket
+ * which refills at a rate of requests per second, and a maximum of requests running at once. The
+ * server has a maximum of requests running at once across every client.
+ *
+ * <p>Requests are admitted before they are scheduled in the executor of the server, requests which
+ * exceed a limit are rejected right away with an {@link me.googas.net.api.Error}. A limit that is
+ * not greater than 0 is not enforced.
+ */
+public class Limits {
+
+  /** Limits which admit every request without counting them. */
+  @NonNull public static final Limits NONE = new Limits(0, 0, 0, 0);
+
+  /** The requests per second that each client may send. */
+  @Getter private final double rate;
+
+  /** The requests that each client may send at once before it is limited by the rate. */
+  @Getter private final int burst;
+
+  /** The requests of each client that may run at once. */
+  @Getter private final int perClient;
+
+  /** The requests of every client that may run at once. */
+  @Getter private final int global;
+
+  /** The requests of every client running. */
+  @NonNull private final AtomicInteger running = new AtomicInteger();
+
+  /** Whether no limit is enforced, in that case requests are not counted. */
+  @Getter private final boolean unlimited;
+
+  /**
+   * Create the limits.
+   *
+   * @param rate the requests per second that each client may send
+   * @param burst the requests that each client may send at once before it is limited by the rate
+   * @param perClient the requests of each client that may run at once
+   * @param global the requests of every client that may run at once
+   */
+  public Limits(double rate, int burst, int perClient, int global) {
+    this.rate = rate;
+    this.burst = Math.max(1, burst);
+    this.perClient = perClient;
+    this.global = global;
+    this.unlimited = rate <= 0 && perClient <= 0 && global <= 0;
+  }
+
+  /**
+   * Get the requests of every client running. Requests are not counted if no limit is enforced.
+   *
+   * @return the amount of requests running
+   */
+  public int getRunning() {
+    return this.running.get();
+  }
+
+  /**
+   * Start the limits of a client.
+   *
+   * @return the limits of the client
+   */
+  @NonNull
+  public Session session() {
+    return new Session();
+  }
+
+  /**
+   * The limits of a client. Requests may be admitted and released by any thread, admitting locks
+   * the bucket of the client unless no limit is enforced.
+   */
+  public class Session {
+
+    /** The requests of the client running. */
+    @NonNull private final AtomicInteger running = new AtomicInteger();
+
+    /** The tokens left in the bucket. */
+    private double tokens = Limits.this.burst;
+
+    /** The {@link System#nanoTime()} when the bucket was last refilled. */
+    private long refilled = System.nanoTime();
+
+    private Session() {}
+
+    /**
+     * Admits a request if it does not exceed any limit. Once the request has run it must be
+     * released with {@link #release()}.
+     *
+     * @return empty if the request was admitted or the reason why it was rejected
+     */
+    @NonNull
+    public Optional<String> admit() {
+      if (Limits.this.unlimited) return Optional.empty();
+      synchronized (this) {
+        if (Limits.this.rate > 0) {
+          long now = System.nanoTime();
+          this.tokens =
+              Math.min(
+                  Limits.this.burst,
+                  this.tokens
+                      + (now - this.refilled) * Limits.this.rate / TimeUnit.SECONDS.toNanos(1));
+          this.refilled = now;
+          if (this.tokens < 1) return Optional.of("Too many requests");
+        }
+        if (this.running.incrementAndGet() > Limits.this.perClient && Limits.this.perClient > 0) {
+          this.running.decrementAndGet();
+          return Optional.of("Too many requests running");
+        }
+        if (Limits.this.running.incrementAndGet() > Limits.this.global && Limits.this.global > 0) {
+          Limits.this.running.decrementAndGet();
+          this.running.decrementAndGet();
+          return Optional.of("The server is busy");
+        }
+        this.tokens--;
+        return Optional.empty();
+      }
+    }
+
+    /** Releases a request that was admitted. */
+    public void release() {
+      if (Limits.this.unlimited) return;
+      this.running.decrementAndGet();
+      Limits.this.running.decrementAndGet();
+    }
+
+    /**
+     * Get the requests of the client running. Requests are not counted if no limit is enforced.
+     *
+     * @return the amount of requests running
+     */
+    public int getRunning() {
+      return this.running.get();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package me.googas.net.sockets.json.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.messages.Publication;
+import me.googas.net.sockets.json.JsonReceptor;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
+import me.googas.net.sockets.json.exception.JsonExternalCommunicationException;
+import me.googas.net.sockets.json.io.Frame;
+import me.googas.net.sockets.json.io.FrameWriter;
+
+/**
+ * The topics to which the clients of a {@link JsonSocketServer} are subscribed. Clients subscribe
+ * sending a request with the method {@link #SUBSCRIBE} and the parameter {@code topic}, and
+ * unsubscribe with {@link #UNSUBSCRIBE}.
+ *
+ * <p>Publishing an object does not wait for responses: the {@link Publication} is serialized once
+ * and the same encoded {@link Frame} is queued in the output of each subscriber. Publishing never
+ * writes to a socket, the outputs of subscribers that are not drained by the selector are drained
+ * in the executor of the server. Subscribers which have more than the limit of bytes waiting to be
+ * written are handled according to the {@link Overflow} policy.
+ */
+public class Topics {
+
+  /** The method of the request to subscribe to a topic. */
+  @NonNull public static final String SUBSCRIBE = "#subscribe";
+
+  /** The method of the request to unsubscribe from a topic. */
+  @NonNull public static final String UNSUBSCRIBE = "#unsubscribe";
+
+  /** The millis to wait before trying again to write a conflated publication. */
+  private static final long RETRY = 10;
+
+  /** The server of the subscribers. */
+  @NonNull private final JsonSocketServer server;
+
+  /** The subscriptions of each topic. */
+  @NonNull
+  private final Map<String, Map<JsonClientThread, Subscription>> topics = new ConcurrentHashMap<>();
+
+  /** The publications that were dropped because the subscriber was too slow. */
+  @NonNull private final LongAdder dropped = new LongAdder();
+
+  /** What to do with the publications for subscribers that are too slow. */
+  @NonNull @Getter @Setter private volatile Overflow overflow = Overflow.DROP;
+
+  /**
+   * The maximum amount of bytes waiting to be written to a subscriber before it is considered too
+   * slow. By default this is 1 MiB.
+   */
+  @Getter @Setter private volatile long limit = 1024 * 1024;
+
+  /**
+   * Create the topics.
+   *
+   * @param server the server of the subscribers
+   */
+  Topics(@NonNull JsonSocketServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Subscribes a client to a topic.
+   *
+   * @param topic the topic to subscribe to
+   * @param client the client to subscribe
+   * @return true if the client was not subscribed to the topic
+   */
+  public boolean subscribe(@NonNull String topic, @NonNull JsonClientThread client) {
+    return this.topics
+            .computeIfAbsent(topic, key -> new ConcurrentHashMap<>())
+            .putIfAbsent(client, new Subscription(client))
+        == null;
+  }
+
+  /**
+   * Unsubscribes a client from a topic.
+   *
+   * @param topic the topic to unsubscribe from
+   * @param client the client to unsubscribe
+   * @return true if the client was subscribed to the topic
+   */
+  public boolean unsubscribe(@NonNull String topic, @NonNull JsonClientThread client) {
+    Map<JsonClientThread, Subscription> subscriptions = this.topics.get(topic);
+    return subscriptions != null && subscriptions.remove(client) != null;
+  }
+
+  /**
+   * Unsubscribes a client from every topic.
+   *
+   * @param client the client to unsubscribe
+   */
+  public void unsubscribe(@NonNull JsonClientThread client) {
+    this.topics.values().forEach(subscriptions -> subscriptions.remove(client));
+  }
+
+  /**
+   * Get the amount of clients subscribed to a topic.
+   *
+   * @param topic the topic to count its subscribers
+   * @return the amount of subscribers
+   */
+  public int getSubscribers(@NonNull String topic) {
+    Map<JsonClientThread, Subscription> subscriptions = this.topics.get(topic);
+    return subscriptions == null ? 0 : subscriptions.size();
+  }
+
+  /**
+   * Get the amount of publications that were not written because the subscriber was too slow. With
+   * {@link Overflow#CONFLATE} this counts the publications replaced by a newer one.
+   *
+   * @return the amount of publications dropped
+   */
+  public long getDropped() {
+    return this.dropped.sum();
+  }
+
+  /**
+   * Publishes an object to every client subscribed to a topic.
+   *
+   * @param topic the topic to publish to
+   * @param object the object to publish
+   * @return the amount of subscribers to which the publication was queued
+   */
+  public int publish(@NonNull String topic, Object object) {
+    Map<JsonClientThread, Subscription> subscriptions = this.topics.get(topic);
+    if (subscriptions == null || subscriptions.isEmpty()) return 0;
+    Gson gson = this.server.getGson();
+    Frame frame = new Frame(gson.toJson(new Publication<>(topic, object)));
+    int queued = 0;
+    for (Subscription subscription : subscriptions.values()) {
+      if (subscription.offer(frame)) queued++;
+    }
+    return queued;
+  }
+
+  /**
+   * Get the receptors that accept the requests to subscribe and unsubscribe.
+   *
+   * @return the receptors
+   */
+  @NonNull
+  Collection<JsonReceptor> getReceptors() {
+    return Arrays.asList(
+        new TopicReceptor(Topics.SUBSCRIBE), new TopicReceptor(Topics.UNSUBSCRIBE));
+  }
+
+  /** What to do with a publication for a subscriber that is too slow. */
+  public enum Overflow {
+    /** The publication is not written to the subscriber. */
+    DROP,
+    /**
+     * Only the latest publication of the topic is kept and written once the subscriber catches up,
+     * the ones before it are dropped. This is meant for topics where each publication is the
+     * complete state, such as the player count of a server.
+     */
+    CONFLATE
+  }
+
+  /** The subscription of a client to a topic. */
+  private class Subscription {
+
+    @NonNull private final JsonClientThread client;
+
+    /** The latest publication waiting for the subscriber to catch up. */
+    @NonNull private final AtomicReference<Frame> pending = new AtomicReference<>();
+
+    /** Whether a retry to write the pending publication is scheduled. */
+    @NonNull private final AtomicBoolean retrying = new AtomicBoolean();
+
+    private Subscription(@NonNull JsonClientThread client) {
+      this.client = client;
+    }
+
+    private boolean offer(@NonNull Frame frame) {
+      if (this.client.isClosed()) return false;
+      FrameWriter output = this.client.getOutput();
+      if (output.getQueued() <= Topics.this.limit) {
+        if (this.pending.getAndSet(null) != null) Topics.this.dropped.increment();
+        return this.write(frame);
+      }
+      if (Topics.this.overflow == Overflow.DROP) {
+        Topics.this.dropped.increment();
+        return false;
+      }
+      if (this.pending.getAndSet(frame) != null) Topics.this.dropped.increment();
+      if (this.retrying.compareAndSet(false, true)) {
+        this.client.getTimingWheel().schedule(Topics.RETRY, this::expire);
+      }
+      return true;
+    }
+
+    private void expire() {
+      try {
+        this.client.getExecutor().execute(this::retry);
+      } catch (RejectedExecutionException e) {
+        this.retrying.set(false);
+      }
+    }
+
+    private void retry() {
+      this.retrying.set(false);
+      Frame frame = this.pending.getAndSet(null);
+      if (frame != null) this.offer(frame);
+    }
+
+    private boolean write(@NonNull Frame frame) {
+      try {
+        this.client.getOutput().write(frame, this.client.getExecutor());
+        return true;
+      } catch (IOException e) {
+        if (!this.client.isClosed()) Topics.this.server.getThrowableHandler().accept(e);
+        return false;
+      }
+    }
+  }
+
+  /** Accepts the requests to subscribe to or unsubscribe from a topic. */
+  private class TopicReceptor implements JsonReceptor {
+
+    @NonNull private final String method;
+
+    private TopicReceptor(@NonNull String method) {
+      this.method = method;
+    }
+
+    @Override
+    public Object execute(
+        Messenger messenger, @NonNull ReceivedJsonRequest request, @NonNull Gson gson)
+        throws JsonExternalCommunicationException {
+      JsonElement topic = request.getParameters().get("topic");
+      if (topic == null || !topic.isJsonPrimitive()) {
+        throw new JsonExternalCommunicationException("Missing argument 'topic' in " + request);
+      }
+      if (!(messenger instanceof JsonClientThread)) {
+        throw new JsonExternalCommunicationException("Only clients of the server may subscribe");
+      }
+      JsonClientThread client = (JsonClientThread) messenger;
+      return this.method.equals(Topics.SUBSCRIBE)
+          ? Topics.this.subscribe(topic.getAsString(), client)
+          : Topics.this.unsubscribe(topic.getAsString(), client);
+    }
+
+    @Override
+    public @NonNull String getRequestMethod() {
+      return this.method;
+    }
+  }
+}
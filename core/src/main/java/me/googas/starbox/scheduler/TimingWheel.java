@@ -0,0 +1,185 @@
+package me.googas.starbox.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A hashed timing wheel used to expire a big amount of timeouts. Scheduling and cancelling a
+ * timeout costs O(1) and each tick only visits the timeouts in one bucket of the wheel. Timeouts
+ * expire in the tick after their deadline so the precision is the duration of a tick.
+ *
+ * <p>The wheel is advanced by its own daemon thread, {@link #advance()} may be used to advance it
+ * earlier.
+ */
+public class TimingWheel {
+
+  /** The duration of a tick in nanos. */
+  private final long tick;
+
+  /** The buckets of the wheel. These may only be accessed while holding the lock */
+  @NonNull private final Queue<Timeout>[] buckets;
+
+  /** The mask to get the bucket of a tick. */
+  private final int mask;
+
+  /** The timeouts that have been scheduled but not yet added to a bucket. */
+  @NonNull private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+  /** The lock to advance the wheel. */
+  @NonNull private final ReentrantLock lock = new ReentrantLock();
+
+  /** The {@link System#nanoTime()} when the wheel was created. */
+  private final long start = System.nanoTime();
+
+  /** The handler in case an expired task throws an exception. */
+  @NonNull @Getter private final Consumer<Throwable> handler;
+
+  /** The next tick that the wheel will process. */
+  private long ticks;
+
+  /**
+   * Create the wheel.
+   *
+   * @param tick the duration of a tick in millis
+   * @param size the amount of buckets in the wheel. This will be rounded to the next power of two
+   * @param handler the handler in case an expired task throws an exception
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public TimingWheel(long tick, int size, @NonNull Consumer<Throwable> handler) {
+    if (tick <= 0) throw new IllegalArgumentException("The tick must be greater than 0");
+    if (size <= 0) throw new IllegalArgumentException("The size must be greater than 0");
+    int buckets = Integer.highestOneBit(size);
+    if (buckets < size) buckets <<= 1;
+    this.tick = TimeUnit.MILLISECONDS.toNanos(tick);
+    this.buckets = new Queue[buckets];
+    for (int i = 0; i < buckets; i++) {
+      this.buckets[i] = new ArrayDeque<>();
+    }
+    this.mask = buckets - 1;
+    this.handler = handler;
+    Thread worker = new Thread(this::work, "starbox-timing-wheel");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Get the wheel shared by the messengers. It has a tick of 10 millis and 512 buckets.
+   *
+   * @return the shared wheel
+   */
+  @NonNull
+  public static TimingWheel getShared() {
+    return Shared.WHEEL;
+  }
+
+  /**
+   * Schedule a task to run once the delay has passed.
+   *
+   * @param delay the delay in millis
+   * @param task the task to run
+   * @return the timeout which may be cancelled
+   */
+  @NonNull
+  public Timeout schedule(long delay, @NonNull Runnable task) {
+    Timeout timeout =
+        new Timeout(System.nanoTime() - this.start + TimeUnit.MILLISECONDS.toNanos(delay), task);
+    this.pending.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Advances the wheel to the current time, expiring every timeout whose deadline has passed. If
+   * another thread is already advancing the wheel this returns immediately.
+   */
+  public void advance() {
+    if (!this.lock.tryLock()) return;
+    try {
+      long now = System.nanoTime() - this.start;
+      long target = now / this.tick;
+      this.transfer();
+      while (this.ticks <= target) {
+        this.expire(this.buckets[(int) (this.ticks & this.mask)], now);
+        this.ticks++;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void transfer() {
+    Timeout timeout;
+    while ((timeout = this.pending.poll()) != null) {
+      if (timeout.cancelled) continue;
+      long expiration = Math.max((timeout.deadline + this.tick - 1) / this.tick, this.ticks);
+      timeout.rounds = (expiration - this.ticks) / this.buckets.length;
+      this.buckets[(int) (expiration & this.mask)].add(timeout);
+    }
+  }
+
+  private void expire(@NonNull Queue<Timeout> bucket, long now) {
+    for (int i = bucket.size(); i > 0; i--) {
+      Timeout timeout = bucket.poll();
+      if (timeout.cancelled) continue;
+      if (timeout.rounds > 0 || timeout.deadline > now) {
+        if (timeout.rounds > 0) timeout.rounds--;
+        bucket.add(timeout);
+        continue;
+      }
+      try {
+        timeout.task.run();
+      } catch (RuntimeException e) {
+        this.handler.accept(e);
+      }
+    }
+  }
+
+  private void work() {
+    while (true) {
+      try {
+        long sleep = this.tick - (System.nanoTime() - this.start) % this.tick;
+        TimeUnit.NANOSECONDS.sleep(sleep);
+      } catch (InterruptedException e) {
+        break;
+      }
+      this.advance();
+    }
+  }
+
+  /** A task scheduled in the wheel. */
+  public static class Timeout {
+
+    /** The deadline of the timeout in nanos since the wheel was created. */
+    private final long deadline;
+
+    /** The task to run once the timeout expires. */
+    @NonNull private final Runnable task;
+
+    /** The rounds of the wheel left until this expires. */
+    private long rounds;
+
+    /** Whether this timeout has been cancelled. */
+    @Getter private volatile boolean cancelled;
+
+    private Timeout(long deadline, @NonNull Runnable task) {
+      this.deadline = deadline;
+      this.task = task;
+    }
+
+    /** Cancels the timeout. The task will not run and the wheel will discard it in its bucket. */
+    public void cancel() {
+      this.cancelled = true;
+    }
+  }
+
+  /** Lazily creates the shared wheel. */
+  private static class Shared {
+    @NonNull
+    private static final TimingWheel WHEEL = new TimingWheel(10, 512, Throwable::printStackTrace);
+  }
+}
@@ -1,21 +1,53 @@
 package me.googas.io;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.NonNull;
 import me.googas.io.mocks.Person;
+import me.googas.net.api.Messenger;
+import me.googas.net.api.RequestExecutors;
 import me.googas.net.api.exception.MessengerListenFailException;
+import me.googas.net.api.messages.Broadcast;
 import me.googas.net.api.messages.Message;
 import me.googas.net.api.messages.Request;
 import me.googas.net.api.messages.RequestBuilder;
+import me.googas.net.api.messages.Response;
+import me.googas.net.api.metrics.MetricsSnapshot;
+import me.googas.net.api.metrics.RequestMetrics;
 import me.googas.net.cache.MemoryCache;
 import me.googas.net.sockets.json.ParamName;
+import me.googas.net.sockets.json.ReceivedJsonRequest;
 import me.googas.net.sockets.json.Receptor;
+import me.googas.net.sockets.json.RequestBatcher;
 import me.googas.net.sockets.json.adapters.MessageDeserializer;
+import me.googas.net.sockets.json.adapters.MessageReader;
 import me.googas.net.sockets.json.client.JsonClient;
+import me.googas.net.sockets.json.client.JsonClientBalancer;
+import me.googas.net.sockets.json.client.JsonClientPool;
+import me.googas.net.sockets.json.client.ReconnectingClient;
+import me.googas.net.sockets.json.io.BufferPool;
+import me.googas.net.sockets.json.io.FrameReader;
+import me.googas.net.sockets.json.io.FrameWriter;
+import me.googas.net.sockets.json.io.Framing;
+import me.googas.net.sockets.json.local.LocalMessenger;
+import me.googas.net.sockets.json.reflect.ReflectJsonReceptor;
 import me.googas.net.sockets.json.server.JsonClientThread;
+import me.googas.net.sockets.json.server.JsonSelectorLoop;
 import me.googas.net.sockets.json.server.JsonSocketServer;
 import me.googas.starbox.scheduler.TimerScheduler;
 import me.googas.starbox.time.Time;
@@ -41,6 +73,7 @@ public class NetTest {
   // The id which will be used for testing using the Person mock
   private static final int id = 0;
   @NonNull private static TestingMocks mocks = new TestingMocks();
+  @NonNull private static final AtomicInteger counted = new AtomicInteger();
   private static JsonSocketServer server;
   private static JsonClient client;
 
@@ -94,6 +127,13 @@ public class NetTest {
     Person person = builder.send(NetTest.client).orElseThrow(() -> exception);
     Assertions.assertEquals(NetTest.id, person.getId());
     NetTest.cache.add(person);
+    // Future request
+    Person futurePerson = builder.sendAsync(NetTest.client).join().orElseThrow(() -> exception);
+    Assertions.assertEquals(NetTest.id, futurePerson.getId());
+    // Request to a method without receptor
+    CompletableFuture<Optional<Person>> unknown =
+        Request.builder(Person.class, "unknown").sendAsync(NetTest.client);
+    Assertions.assertThrows(ExecutionException.class, () -> unknown.get(1, TimeUnit.SECONDS));
     // Async Request
     NetTest.client.sendRequest(
         builder.build(),
@@ -152,6 +192,850 @@ public class NetTest {
                                 "Async: Ping from server to %s is: %dms", client, ping))));
   }
 
+  @Test
+  @Order(3)
+  void nonBlockingServer() throws IOException, MessengerListenFailException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3001)
+            .selectors(2)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in non-blocking server"))
+            .start();
+    JsonClient client =
+        JsonClient.join("localhost", 3001)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      for (int i = 0; i < 10; i++) {
+        Person person =
+            Request.builder(Person.class, "person")
+                .put("id", NetTest.id)
+                .send(client)
+                .orElseThrow(() -> new NullPointerException("Did not return the existing person"));
+        Assertions.assertEquals(NetTest.id, person.getId());
+      }
+      Map<JsonClientThread, Optional<Integer>> pings =
+          server.sendRequest(
+              Request.builder(int.class, "ping").put("init", System.currentTimeMillis()).build());
+      Assertions.assertEquals(1, pings.size());
+      pings.values().forEach(ping -> Assertions.assertTrue(ping.isPresent()));
+    } finally {
+      client.close();
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(4)
+  void timeouts() throws IOException {
+    JsonClient client =
+        JsonClient.join("localhost", 3000)
+            .maxWait(50)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      CompletableFuture<Optional<Object>> future =
+          Request.builder(Object.class, "sleep").put("millis", 200).sendAsync(client);
+      ExecutionException exception =
+          Assertions.assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+      Assertions.assertTrue(exception.getCause() instanceof MessengerListenFailException);
+      Assertions.assertTrue(client.getRequests().isEmpty());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  @Order(5)
+  void lengthFraming()
+      throws IOException, MessengerListenFailException, ExecutionException, InterruptedException,
+          TimeoutException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3002)
+            .selectors(1)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in non-blocking server"))
+            .start();
+    try {
+      for (int port : new int[] {3000, 3002}) {
+        JsonClient client =
+            JsonClient.join("localhost", port)
+                .framing(Framing.LENGTH)
+                .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+                .start();
+        try {
+          Assertions.assertEquals(Framing.LENGTH, client.getInput().getFraming());
+          Assertions.assertEquals(Framing.LENGTH, client.getOutput().getFraming());
+          for (int i = 0; i < 10; i++) {
+            Person person =
+                Request.builder(Person.class, "person")
+                    .put("id", NetTest.id)
+                    .send(client)
+                    .orElseThrow(
+                        () -> new NullPointerException("Did not return the existing person"));
+            Assertions.assertEquals(NetTest.id, person.getId());
+          }
+        } finally {
+          client.close();
+        }
+        // Requests sent while the handshake waits for its response are held until it is done
+        JsonClient late =
+            JsonClient.join("localhost", port)
+                .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+                .start();
+        try {
+          CompletableFuture<Framing> handshake =
+              CompletableFuture.supplyAsync(
+                  () -> {
+                    try {
+                      return late.handshake(Framing.LENGTH);
+                    } catch (MessengerListenFailException e) {
+                      throw new IllegalStateException(e);
+                    }
+                  });
+          List<CompletableFuture<Optional<Person>>> futures = new ArrayList<>();
+          for (int i = 0; i < 20; i++) {
+            futures.add(
+                Request.builder(Person.class, "person").put("id", NetTest.id).sendAsync(late));
+          }
+          Assertions.assertEquals(Framing.LENGTH, handshake.get(1, TimeUnit.SECONDS));
+          for (CompletableFuture<Optional<Person>> future : futures) {
+            Assertions.assertTrue(future.get(1, TimeUnit.SECONDS).isPresent());
+          }
+        } finally {
+          late.close();
+        }
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(6)
+  void broadcast() throws IOException, InterruptedException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3003)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in broadcast server"))
+            .start();
+    JsonClient responding =
+        JsonClient.join("localhost", 3003)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    JsonClient failing =
+        JsonClient.join("localhost", 3003)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      while (server.getClients().size() < 2) Thread.sleep(1);
+      Broadcast<JsonClientThread, Integer> broadcast =
+          server
+              .sendRequestAsync(
+                  Request.builder(int.class, "ping")
+                      .put("init", System.currentTimeMillis())
+                      .build())
+              .join();
+      Assertions.assertEquals(1, broadcast.size());
+      Assertions.assertEquals(1, broadcast.getFailures().size());
+      Assertions.assertFalse(broadcast.isComplete());
+    } finally {
+      responding.close();
+      failing.close();
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(7)
+  void boundedExecutor() throws IOException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3004)
+            .executor(RequestExecutors.bounded(1, 1))
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in bounded server"))
+            .start();
+    JsonClient client =
+        JsonClient.join("localhost", 3004)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      List<CompletableFuture<Optional<Object>>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(Request.builder(Object.class, "sleep").put("millis", 200).sendAsync(client));
+      }
+      long rejected =
+          futures.stream()
+              .filter(
+                  future -> {
+                    try {
+                      future.get(1, TimeUnit.SECONDS);
+                      return false;
+                    } catch (Exception e) {
+                      return e instanceof ExecutionException;
+                    }
+                  })
+              .count();
+      Assertions.assertEquals(1, rejected);
+    } finally {
+      client.close();
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(8)
+  void pool() throws IOException {
+    JsonClientPool pool =
+        JsonClient.join("localhost", 3000)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in pool"))
+            .pool(3);
+    try {
+      List<CompletableFuture<Optional<Person>>> futures = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        futures.add(Request.builder(Person.class, "person").put("id", NetTest.id).sendAsync(pool));
+      }
+      for (CompletableFuture<Optional<Person>> future : futures) {
+        Assertions.assertEquals(NetTest.id, future.join().map(Person::getId).orElse(-1));
+      }
+      Assertions.assertEquals(3, pool.getClients().size());
+    } finally {
+      pool.close();
+    }
+    Assertions.assertTrue(pool.isClosed());
+  }
+
+  @Test
+  @Order(9)
+  void batches() {
+    RequestBatcher batcher = new RequestBatcher(NetTest.client, 4, 20);
+    List<CompletableFuture<Optional<Person>>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(batcher.add(Request.builder(Person.class, "person").put("id", NetTest.id)));
+    }
+    for (CompletableFuture<Optional<Person>> future : futures) {
+      Assertions.assertEquals(NetTest.id, future.join().map(Person::getId).orElse(-1));
+    }
+  }
+
+  @Test
+  @Order(10)
+  void compression() throws IOException, MessengerListenFailException {
+    JsonClient client =
+        JsonClient.join("localhost", 3000)
+            .compression(0)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      Assertions.assertEquals(0, client.getOutput().getCompressionThreshold());
+      for (int i = 0; i < 10; i++) {
+        Person person =
+            Request.builder(Person.class, "person")
+                .put("id", NetTest.id)
+                .send(client)
+                .orElseThrow(() -> new NullPointerException("Did not return the existing person"));
+        Assertions.assertEquals(NetTest.id, person.getId());
+      }
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  @Order(11)
+  void sessionAuth() throws IOException, MessengerListenFailException {
+    AtomicInteger checks = new AtomicInteger();
+    JsonSocketServer server =
+        JsonSocketServer.listen(3005)
+            .sessionAuth(0)
+            .auth(
+                (client, request) -> {
+                  checks.incrementAndGet();
+                  return request.getParameters().containsKey("token");
+                })
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in session server"))
+            .start();
+    try {
+      JsonClient client =
+          JsonClient.join("localhost", 3005)
+              .credentials("token", "secret")
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        for (int i = 0; i < 5; i++) {
+          Assertions.assertTrue(
+              Request.builder(Person.class, "person")
+                  .put("id", NetTest.id)
+                  .send(client)
+                  .isPresent());
+        }
+        Assertions.assertEquals(1, checks.get());
+      } finally {
+        client.close();
+      }
+      Assertions.assertThrows(
+          IOException.class,
+          () ->
+              JsonClient.join("localhost", 3005)
+                  .credentials("user", "anonymous")
+                  .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+                  .start());
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(12)
+  void deadlines() throws MessengerListenFailException {
+    long remaining =
+        Request.builder(long.class, "deadline")
+            .within(2000)
+            .send(NetTest.client)
+            .orElseThrow(() -> new NullPointerException("Did not return the time left"));
+    Assertions.assertTrue(remaining > 0 && remaining <= 2000);
+    Assertions.assertEquals(
+        -1L, Request.builder(long.class, "deadline").send(NetTest.client).orElse(0L));
+    CompletableFuture<Optional<Long>> expired =
+        Request.builder(long.class, "deadline")
+            .setDeadline(System.currentTimeMillis() - 1)
+            .sendAsync(NetTest.client);
+    Assertions.assertThrows(TimeoutException.class, () -> expired.get(300, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  @Order(13)
+  void metrics() throws IOException, MessengerListenFailException {
+    RequestMetrics metrics = new RequestMetrics();
+    JsonSocketServer server =
+        JsonSocketServer.listen(3006)
+            .metrics(metrics)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in metrics server"))
+            .start();
+    try {
+      JsonClient client =
+          JsonClient.join("localhost", 3006)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        for (int i = 0; i < 10; i++) {
+          Request.builder(Person.class, "person").put("id", NetTest.id).send(client);
+        }
+        Assertions.assertThrows(
+            MessengerListenFailException.class,
+            () -> Request.builder(Person.class, "unknown").send(client));
+      } finally {
+        client.close();
+      }
+      MetricsSnapshot snapshot = metrics.snapshot();
+      MetricsSnapshot.Method person =
+          snapshot
+              .getMethod("person")
+              .orElseThrow(() -> new NullPointerException("Requests were not recorded"));
+      Assertions.assertEquals(10, person.getRequests());
+      Assertions.assertEquals(0, person.getInFlight());
+      Assertions.assertEquals(10, person.getLatency().getCount());
+      Assertions.assertTrue(person.getLatency().getP50() <= person.getLatency().getMax());
+      Assertions.assertEquals(1, snapshot.getUnknown());
+      Assertions.assertTrue(snapshot.getBytesRead() > 0 && snapshot.getBytesWritten() > 0);
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(14)
+  void local() throws MessengerListenFailException {
+    LocalMessenger server =
+        LocalMessenger.builder()
+            .addReceptors(new TestingReceptors())
+            .auth((client, request) -> !request.getMethod().equals("ping"))
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in local server"))
+            .build();
+    LocalMessenger client =
+        LocalMessenger.builder()
+            .maxWait(100)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in local client"))
+            .connect(server);
+    try {
+      Person person =
+          Request.builder(Person.class, "person")
+              .put("id", NetTest.id)
+              .send(client)
+              .orElseThrow(() -> new NullPointerException("Did not return the existing person"));
+      Assertions.assertEquals(NetTest.id, person.getId());
+      Assertions.assertTrue(
+          Request.builder(long.class, "deadline").within(1000).send(client).orElse(-1L) > 0);
+      int cached =
+          Request.builder(int.class, "cached")
+              .put("key", "local")
+              .send(client)
+              .orElseThrow(() -> new NullPointerException("Did not return the count"));
+      Assertions.assertEquals(
+          cached, Request.builder(int.class, "cached").put("key", "local").send(client).get());
+      Assertions.assertThrows(
+          MessengerListenFailException.class,
+          () -> Request.builder(int.class, "ping").put("init", 0).send(client));
+      Assertions.assertThrows(
+          MessengerListenFailException.class,
+          () -> Request.builder(Object.class, "sleep").put("millis", 300).send(client));
+    } finally {
+      client.close();
+    }
+    Assertions.assertTrue(server.isClosed());
+  }
+
+  @Test
+  @Order(15)
+  void topics() throws IOException, MessengerListenFailException, InterruptedException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3007)
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in topics server"))
+            .start();
+    try {
+      JsonClient client =
+          JsonClient.join("localhost", 3007)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        BlockingQueue<Person> people = new LinkedBlockingQueue<>();
+        client.subscribe("people", Person.class, people::add);
+        Assertions.assertEquals(1, server.getTopics().getSubscribers("people"));
+        Assertions.assertEquals(
+            0, server.publish("others", new Person(NetTest.id, "Foo", "Bar", "a@a.com", 18)));
+        Assertions.assertEquals(
+            1, server.publish("people", new Person(NetTest.id, "Foo", "Bar", "a@a.com", 18)));
+        Person person = people.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(person);
+        Assertions.assertEquals(NetTest.id, person.getId());
+        server.getTopics().setLimit(-1);
+        Assertions.assertEquals(
+            0, server.publish("people", new Person(NetTest.id, "Foo", "Bar", "a@a.com", 18)));
+        Assertions.assertEquals(1, server.getTopics().getDropped());
+        server.getTopics().setLimit(1024 * 1024);
+        client.unsubscribe("people");
+        Assertions.assertEquals(0, server.getTopics().getSubscribers("people"));
+      } finally {
+        client.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(16)
+  void coalescing() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    JsonClient client =
+        JsonClient.join("localhost", 3000)
+            .coalesce()
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+            .start();
+    try {
+      int before = NetTest.counted.get();
+      List<CompletableFuture<Optional<Integer>>> futures = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        futures.add(Request.builder(int.class, "count").put("millis", 200).sendAsync(client));
+      }
+      CompletableFuture<Optional<Integer>> other =
+          Request.builder(int.class, "count").put("millis", 100).sendAsync(client);
+      CompletableFuture<Optional<Integer>> deadline =
+          Request.builder(int.class, "count")
+              .put("millis", 200)
+              .setDeadline(System.currentTimeMillis() + 60000)
+              .sendAsync(client);
+      for (CompletableFuture<Optional<Integer>> future : futures) {
+        Assertions.assertEquals(futures.get(0).get(1, TimeUnit.SECONDS), future.get());
+      }
+      Assertions.assertTrue(other.get(1, TimeUnit.SECONDS).isPresent());
+      Assertions.assertTrue(deadline.get(1, TimeUnit.SECONDS).isPresent());
+      Assertions.assertEquals(before + 3, NetTest.counted.get());
+      Assertions.assertEquals(
+          4,
+          client
+              .getCoalescer()
+              .orElseThrow(() -> new NullPointerException("Requests are not coalesced"))
+              .getCoalesced());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  @Order(17)
+  void balancer() throws IOException, MessengerListenFailException, InterruptedException {
+    JsonSocketServer replica =
+        JsonSocketServer.listen(3008)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in replica"))
+            .start();
+    JsonClientBalancer balancer;
+    try {
+      balancer =
+          JsonClient.join("localhost", 3000)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              // Hedges run in the executor, the common pool may be busy with the sleeping receptor
+              .executor(RequestExecutors.bounded(2, 16))
+              .balance("localhost:3008");
+      try {
+        for (int i = 0; i < 10; i++) {
+          Assertions.assertTrue(
+              Request.builder(Person.class, "person")
+                  .put("id", NetTest.id)
+                  .send(balancer)
+                  .isPresent());
+        }
+        Assertions.assertTrue(
+            balancer.getEndpoints().stream().allMatch(endpoint -> endpoint.getAverage() > 0));
+        balancer.hedge(0.5, 20);
+        // Requests that are not idempotent would run twice so they are never hedged
+        Request.builder(Object.class, "sleep").put("millis", 200).send(balancer);
+        Assertions.assertEquals(0, balancer.getHedged());
+        Request.builder(Object.class, "sleep").put("millis", 200).idempotent().send(balancer);
+        Assertions.assertEquals(1, balancer.getHedged());
+      } catch (MessengerListenFailException | RuntimeException e) {
+        balancer.close();
+        throw e;
+      }
+    } finally {
+      replica.close();
+    }
+    try {
+      long wait = 0;
+      while (!balancer.getEndpoints().get(1).getClient().isClosed() && wait++ < 5000) {
+        Thread.sleep(1);
+      }
+      Assertions.assertTrue(
+          Request.builder(Person.class, "person").put("id", NetTest.id).send(balancer).isPresent());
+    } finally {
+      balancer.close();
+    }
+  }
+
+  @Test
+  @Order(18)
+  void reconnecting()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3009)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in reconnecting server"))
+            .start();
+    try {
+      ReconnectingClient client =
+          JsonClient.join("localhost", 3009)
+              .maxWait(3000)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .reconnecting(20, 200);
+      try {
+        while (server.getClients().isEmpty()) Thread.sleep(1);
+        CompletableFuture<Optional<Integer>> idempotent =
+            Request.builder(int.class, "count").put("millis", 200).idempotent().sendAsync(client);
+        CompletableFuture<Optional<Integer>> other =
+            Request.builder(int.class, "count").put("millis", 200).sendAsync(client);
+        // Copy the clients first so the connection made once the client reconnects is not closed
+        new ArrayList<>(server.getClients()).forEach(JsonClientThread::close);
+        ExecutionException exception =
+            Assertions.assertThrows(ExecutionException.class, () -> other.get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof MessengerListenFailException);
+        Assertions.assertTrue(idempotent.get(2, TimeUnit.SECONDS).isPresent());
+        Assertions.assertEquals(1, client.getReconnects());
+        Assertions.assertEquals(1, client.getReplayed());
+      } finally {
+        client.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(19)
+  void responseCache() throws MessengerListenFailException {
+    int first =
+        Request.builder(int.class, "cached")
+            .put("key", "a")
+            .send(NetTest.client)
+            .orElseThrow(() -> new NullPointerException("Did not return the count"));
+    Assertions.assertEquals(
+        first, Request.builder(int.class, "cached").put("key", "a").send(NetTest.client).get());
+    Assertions.assertNotEquals(
+        first, Request.builder(int.class, "cached").put("key", "b").send(NetTest.client).get());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            ReflectJsonReceptor.getReceptors(
+                new Object() {
+                  @Receptor(value = "whoami", cache = 60000)
+                  public String whoami(@NonNull Messenger messenger) {
+                    return messenger.toString();
+                  }
+                }));
+  }
+
+  @Test
+  @Order(20)
+  void limits() throws IOException, MessengerListenFailException, InterruptedException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3010)
+            .limits(1, 3, 1, 0)
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in limited server"))
+            .start();
+    try {
+      JsonClient client =
+          JsonClient.join("localhost", 3010)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        CompletableFuture<Optional<Object>> running =
+            Request.builder(Object.class, "sleep").put("millis", 200).sendAsync(client);
+        Assertions.assertThrows(
+            MessengerListenFailException.class,
+            () -> Request.builder(Object.class, "sleep").put("millis", 200).send(client));
+        Assertions.assertDoesNotThrow(() -> running.get(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 2; i++) {
+          Assertions.assertTrue(
+              Request.builder(Person.class, "person")
+                  .put("id", NetTest.id)
+                  .send(client)
+                  .isPresent());
+        }
+        Assertions.assertThrows(
+            MessengerListenFailException.class,
+            () -> Request.builder(Person.class, "person").put("id", NetTest.id).send(client));
+        Assertions.assertEquals(0, server.getLimits().getRunning());
+      } finally {
+        client.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(21)
+  void selectorAuth() throws IOException, MessengerListenFailException {
+    List<Thread> threads = new ArrayList<>();
+    JsonSocketServer server =
+        JsonSocketServer.listen(3011)
+            .selectors(1)
+            .auth(
+                (client, request) -> {
+                  synchronized (threads) {
+                    threads.add(Thread.currentThread());
+                  }
+                  return request.getParameters().containsKey("id");
+                })
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in non-blocking server"))
+            .start();
+    try {
+      JsonClient client =
+          JsonClient.join("localhost", 3011)
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        Assertions.assertTrue(
+            Request.builder(Person.class, "person").put("id", NetTest.id).send(client).isPresent());
+        Assertions.assertThrows(
+            MessengerListenFailException.class,
+            () -> Request.builder(Object.class, "sleep").put("millis", 1).send(client));
+        synchronized (threads) {
+          Assertions.assertEquals(2, threads.size());
+          threads.forEach(thread -> Assertions.assertFalse(thread instanceof JsonSelectorLoop));
+        }
+      } finally {
+        client.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(22)
+  void lateHandshake() throws IOException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3012)
+            .sessionAuth(0)
+            .auth(
+                (client, request) -> {
+                  try {
+                    Thread.sleep(300);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  return true;
+                })
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in slow server"))
+            .start();
+    try {
+      Assertions.assertThrows(
+          IOException.class,
+          () ->
+              JsonClient.join("localhost", 3012)
+                  .maxWait(50)
+                  .framing(Framing.LENGTH)
+                  .credentials("token", "secret")
+                  .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+                  .start());
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  @Order(23)
+  void selectorSessionAuth()
+      throws IOException, MessengerListenFailException, InterruptedException, ExecutionException,
+          TimeoutException {
+    JsonSocketServer server =
+        JsonSocketServer.listen(3013)
+            .selectors(1)
+            .sessionAuth(0)
+            .auth(
+                (client, request) -> {
+                  if (request.getParameters().containsKey("slow")) {
+                    try {
+                      Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                  }
+                  return !(Thread.currentThread() instanceof JsonSelectorLoop);
+                })
+            .executor(RequestExecutors.bounded(2, 16))
+            .addReceptors(new TestingReceptors())
+            .handle(e -> NetTest.logger.warn(e, () -> "Caught error in non-blocking server"))
+            .start();
+    try {
+      JsonClient fast =
+          JsonClient.join("localhost", 3013)
+              .credentials("token", "fast")
+              .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+              .start();
+      try {
+        CompletableFuture<JsonClient> slow =
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    return JsonClient.join("localhost", 3013)
+                        .maxWait(2000)
+                        .credentials("slow", true)
+                        .handle(e -> NetTest.logger.warn(e, () -> "Caught error in client"))
+                        .start();
+                  } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                  }
+                });
+        Thread.sleep(100);
+        // The loop keeps serving other channels while the slow session is authenticated
+        Assertions.assertTrue(
+            Request.builder(Person.class, "person")
+                .put("id", NetTest.id)
+                .sendAsync(fast)
+                .get(300, TimeUnit.MILLISECONDS)
+                .isPresent());
+        slow.get(2, TimeUnit.SECONDS).close();
+      } finally {
+        fast.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  void frames() throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(stream);
+    writer.write("{\"line\":1}");
+    writer.setFraming(Framing.LENGTH);
+    writer.write("{\"length\":2}");
+    Assertions.assertEquals(0, writer.getQueued());
+    FrameReader reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()));
+    Assertions.assertEquals("{\"line\":1}", reader.read());
+    reader.setFraming(Framing.LENGTH);
+    Assertions.assertEquals("{\"length\":2}", reader.read());
+    Assertions.assertNull(reader.read());
+    stream.reset();
+    writer.setCompressionThreshold(0);
+    String large = new String(new char[4096]).replace('\0', 'a');
+    writer.write(large);
+    Assertions.assertTrue(stream.size() < large.length());
+    reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()));
+    reader.setFraming(Framing.LENGTH);
+    Assertions.assertEquals(large, reader.read());
+  }
+
+  @Test
+  void pooledFrames() throws IOException {
+    BufferPool pool = new BufferPool(4);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(stream);
+    writer.setPool(pool);
+    String message = "{\"text\":\"caf\u00e9 \u20ac \ud83d\ude00\"}";
+    writer.write(message);
+    writer.setFraming(Framing.LENGTH);
+    writer.write(message);
+    writer.write(message);
+    Assertions.assertEquals(0, writer.getQueued());
+    Assertions.assertEquals(1, pool.getAllocated());
+    Assertions.assertEquals(2, pool.getReused());
+    FrameReader reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()));
+    Assertions.assertEquals(message, reader.read());
+    reader.setFraming(Framing.LENGTH);
+    Assertions.assertEquals(message, reader.read());
+    Assertions.assertEquals(message, reader.read());
+    Assertions.assertNull(reader.read());
+  }
+
+  @Test
+  void pooledLargeFrames() throws IOException {
+    BufferPool pool = new BufferPool(4);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    FrameWriter writer = new FrameWriter(stream);
+    writer.setPool(pool);
+    writer.setFraming(Framing.LENGTH);
+    // Messages bigger than the pooled buffers are encoded into heap buffers
+    String large = "{\"text\":\"" + new String(new char[70000]).replace('\0', '\u00e9') + "\"}";
+    writer.write(large);
+    writer.setCompressionThreshold(1024);
+    writer.write(large);
+    Assertions.assertEquals(0, pool.getAllocated());
+    FrameReader reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()));
+    reader.setFraming(Framing.LENGTH);
+    Assertions.assertEquals(large, reader.read());
+    Assertions.assertEquals(large, reader.read());
+    Assertions.assertNull(reader.read());
+  }
+
+  @Test
+  void messageReader() {
+    Gson gson = new Gson();
+    UUID id = UUID.randomUUID();
+    Message response =
+        MessageReader.read(
+            gson,
+            "{\"object\":{\"id\":3},\"id\":\"" + id + "\",\"error\":false}",
+            uuid -> uuid.equals(id) ? Person.class : null);
+    Assertions.assertTrue(response instanceof Response);
+    Assertions.assertFalse(((Response<?>) response).isError());
+    Assertions.assertEquals(3, ((Person) ((Response<?>) response).getObject().get()).getId());
+    Message request =
+        MessageReader.read(
+            gson,
+            "{\"id\":\"" + id + "\",\"method\":\"person\",\"parameters\":{\"id\":3}}",
+            uuid -> null);
+    Assertions.assertTrue(request instanceof ReceivedJsonRequest);
+    Assertions.assertEquals("person", ((ReceivedJsonRequest) request).getMethod());
+  }
+
   /** Testing mock receptors. */
   public static class TestingReceptors {
 
@@ -166,6 +1050,55 @@ public class NetTest {
       return NetTest.mocks.getPerson(id).orElse(null);
     }
 
+    /**
+     * Sleeps the thread running the receptor.
+     *
+     * @param millis the millis to sleep
+     * @throws InterruptedException if the thread is interrupted
+     */
+    @Receptor("sleep")
+    public void sleep(@ParamName("millis") long millis) throws InterruptedException {
+      Thread.sleep(millis);
+    }
+
+    /**
+     * Counts the times this method has been executed after sleeping.
+     *
+     * @param millis the millis to sleep
+     * @return the times this method has been executed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    @Receptor("count")
+    public int count(@ParamName("millis") long millis) throws InterruptedException {
+      Thread.sleep(millis);
+      return NetTest.counted.incrementAndGet();
+    }
+
+    /**
+     * Counts the times this method has been executed, its results are cached.
+     *
+     * @param key the key of the result
+     * @return the times this method has been executed
+     */
+    @Receptor(value = "cached", cache = 60000)
+    public int cached(@ParamName("key") String key) {
+      return NetTest.counted.incrementAndGet();
+    }
+
+    /**
+     * Get the millis left before the deadline of the request.
+     *
+     * @param request the request being executed
+     * @return the millis left or -1 if the request has no deadline
+     */
+    @Receptor("deadline")
+    public long deadline(@NonNull ReceivedJsonRequest request) {
+      return request
+          .getDeadline()
+          .map(deadline -> deadline - System.currentTimeMillis())
+          .orElse(-1L);
+    }
+
     /**
      * Check the ping between the two messengers.
      *